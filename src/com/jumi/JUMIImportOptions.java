@@ -0,0 +1,72 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi;
+
+/**
+ * JUMIImportOptions
+ *
+ * Controls what gets imported. Anything switched off is skipped while the file is being parsed, so it costs
+ * (almost) nothing rather than being built and thrown away afterwards. The defaults import everything.
+ *
+ * @author Richard Greenlees
+ */
+public class JUMIImportOptions {
+
+    /** Don't import normals */
+    public boolean skipNormals = false;
+    /** Don't import texture coordinates */
+    public boolean skipUVs = false;
+    /** Don't import skeletons and skin clusters */
+    public boolean skipSkinning = false;
+    /** Import textures, but not any image data embedded in the file */
+    public boolean skipEmbeddedTextures = false;
+    /** Only import vertex positions and indices. Normals, UVs, materials, textures, skeletons and animation are all skipped */
+    public boolean geometryOnly = false;
+    /** If set, only meshes whose name contains this are imported */
+    public String nameFilter = null;
+    /** FBX only. Inflate compressed arrays on a worker pool while the rest of the file is parsed */
+    public boolean parallelInflation = false;
+    /** Parse on a worker pool. For FBX that's the children of the Objects node, for OBJ it's chunks of the file split at line breaks */
+    public boolean parallelParsing = false;
+
+    public boolean importNormals() {
+        return !(skipNormals || geometryOnly);
+    }
+
+    public boolean importUVs() {
+        return !(skipUVs || geometryOnly);
+    }
+
+    public boolean importSkinning() {
+        return !(skipSkinning || geometryOnly);
+    }
+
+    public boolean importMaterials() {
+        return !geometryOnly;
+    }
+
+    public boolean importEmbeddedTextures() {
+        return !(skipEmbeddedTextures || geometryOnly);
+    }
+
+    /** Should a mesh with the supplied name be imported? */
+    public boolean acceptsName(String meshName) {
+        return (nameFilter == null || meshName.contains(nameFilter));
+    }
+}
@@ -40,13 +40,23 @@ public class JUMILoader {
      * @return JUMIScene - A simplified data structure containing key elements
      */
     public static JUMIScene loadModel(String filename) {
+        return loadModel(filename, new JUMIImportOptions());
+    }
+
+    /** Load the supplied file, importing only what the options ask for
+     * 
+     * @param filename The file to load
+     * @param options What to import
+     * @return JUMIScene - A simplified data structure containing key elements
+     */
+    public static JUMIScene loadModel(String filename, JUMIImportOptions options) {
         try {
             String fileExtension = filename.substring(filename.indexOf('.') + 1, filename.length()).toUpperCase();
             switch (fileExtension) {
                 case "FBX":
-                    return FBXLoader.importModel(filename);
+                    return FBXLoader.importModel(filename, options);
                 case "OBJ":
-                    return OBJLoader.importModel(filename);
+                    return OBJLoader.importModel(filename, options);
                 default:
                     return null;
             }
@@ -0,0 +1,125 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.data;
+
+import java.util.Arrays;
+
+/**
+ * IntList
+ * 
+ * An int counterpart to FloatList, holding face indices and parser records without boxing each one
+ * 
+ * @author Richard Greenlees
+ */
+public class IntList {
+
+    private static final int DEFAULT_CAPACITY = 64;
+    // Some VMs can't allocate an array right up to Integer.MAX_VALUE
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private int[] data;
+    private int size = 0;
+
+    public IntList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntList(int initialCapacity) {
+        data = new int[Math.max(initialCapacity, 1)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return data[index];
+    }
+
+    /** The array backing the list, for loops that can't afford a check on every read. Only the first size() values
+     * are in use, and the list moves to a new array whenever it grows, so fetch it again after adding anything */
+    public int[] array() {
+        return data;
+    }
+
+    public void add(int value) {
+        ensureRemaining(1);
+        data[size++] = value;
+    }
+
+    public void add(int x, int y) {
+        ensureRemaining(2);
+        data[size++] = x;
+        data[size++] = y;
+    }
+
+    public void add(int x, int y, int z) {
+        ensureRemaining(3);
+        data[size++] = x;
+        data[size++] = y;
+        data[size++] = z;
+    }
+
+    /** Add every value in another list to the end of this one */
+    public void addAll(IntList other) {
+        ensureRemaining(other.size);
+        System.arraycopy(other.data, 0, data, size, other.size);
+        size += other.size;
+    }
+
+    /** Make sure the list can hold at least capacity values without growing again */
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            grow(capacity);
+        }
+    }
+
+    /* Make room for count more values. Compared against the space left rather than by adding to size, which could
+     * overflow and slip past the check */
+    private void ensureRemaining(int count) {
+        if (count > data.length - size) {
+            grow((long) size + count);
+        }
+    }
+
+    private void grow(long capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new OutOfMemoryError("IntList can't hold more than " + MAX_CAPACITY + " values");
+        }
+        // Grow by half again each time, the same as ArrayList, so huge lists don't briefly need twice their size
+        long newCapacity = Math.max(capacity, data.length + (data.length >> 1));
+        data = Arrays.copyOf(data, (int) Math.min(newCapacity, MAX_CAPACITY));
+    }
+
+    /** A copy of the values in the list */
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public String toString() {
+        return "IntList: " + size + " values";
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * XXHash64
+ * 
+ * The 64-bit xxHash of a block of bytes. Fast enough to run over every embedded file in a scene, and good enough
+ * that two different files are very unlikely to share a hash. Anything that matters should still compare the bytes.
+ * 
+ * @author Richard Greenlees
+ */
+public final class XXHash64 {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private XXHash64() {
+    }
+
+    /** Hash the remaining bytes of the supplied buffer, without changing its position */
+    public static long hash(ByteBuffer data, long seed) {
+        ByteBuffer input = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int position = input.position();
+        int end = input.limit();
+        long result;
+
+        if (end - position >= 32) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+
+            int limit = end - 32;
+            do {
+                v1 = round(v1, input.getLong(position));
+                v2 = round(v2, input.getLong(position + 8));
+                v3 = round(v3, input.getLong(position + 16));
+                v4 = round(v4, input.getLong(position + 24));
+                position += 32;
+            } while (position <= limit);
+
+            result = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            result = merge(result, v1);
+            result = merge(result, v2);
+            result = merge(result, v3);
+            result = merge(result, v4);
+        } else {
+            result = seed + PRIME5;
+        }
+
+        result += input.limit() - input.position();
+
+        while (position + 8 <= end) {
+            result ^= round(0, input.getLong(position));
+            result = Long.rotateLeft(result, 27) * PRIME1 + PRIME4;
+            position += 8;
+        }
+
+        if (position + 4 <= end) {
+            result ^= (input.getInt(position) & 0xFFFFFFFFL) * PRIME1;
+            result = Long.rotateLeft(result, 23) * PRIME2 + PRIME3;
+            position += 4;
+        }
+
+        while (position < end) {
+            result ^= (input.get(position) & 0xFF) * PRIME5;
+            result = Long.rotateLeft(result, 11) * PRIME1;
+            position++;
+        }
+
+        result ^= result >>> 33;
+        result *= PRIME2;
+        result ^= result >>> 29;
+        result *= PRIME3;
+        result ^= result >>> 32;
+        return result;
+    }
+
+    /** Hash the remaining bytes of the supplied buffer with a seed of 0 */
+    public static long hash(ByteBuffer data) {
+        return hash(data, 0);
+    }
+
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME1;
+    }
+
+    private static long merge(long accumulator, long value) {
+        accumulator ^= round(0, value);
+        return accumulator * PRIME1 + PRIME4;
+    }
+}
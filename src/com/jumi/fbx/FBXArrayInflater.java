@@ -0,0 +1,343 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.fbx;
+
+import com.jumi.fbx.objects.definitions.FBXObjectDefinition;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * FBXArrayInflater
+ * 
+ * Inflates deflate-compressed array properties. Normally this happens inline when a property's array is first read,
+ * but in parallel mode a cheap structural scan first records the compressed arrays each object will read, and they
+ * are inflated concurrently on a ForkJoinPool while parsing carries on. A property joins on its array when it reaches
+ * it. Only a bounded amount is handed to the pool at a time, so results waiting to be read can't pile up. Geometry
+ * is only read when its mesh is built, if at all, so the loader discards the arrays of an object once it knows they
+ * won't be read, letting the arrays behind them through.
+ * 
+ * The array length is known up front, so arrays are inflated straight into exactly sized space. Each thread keeps
+ * its own Inflater and scratch buffers, so inflating an array inline doesn't allocate anything.
+ * 
+ * @author Richard Greenlees
+ */
+public class FBXArrayInflater {
+
+    // Arrays smaller than this are inflated inline, it isn't worth the overhead of a task
+    private static final int MIN_PARALLEL_SIZE = 4096;
+
+    // Scratch space above this size isn't kept around after use, so one huge array doesn't pin memory for good
+    private static final int MAX_POOLED_SIZE = 1 << 24;
+
+    // Inflated arrays waiting to be picked up are held on the heap, so only this much is handed to the pool at once
+    private static final long MAX_SUBMITTED_BYTES = 1L << 26;
+
+    // Some VMs can't allocate an array right up to Integer.MAX_VALUE
+    private static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final ThreadLocal<InflateContext> contexts = new ThreadLocal<InflateContext>() {
+        @Override
+        protected InflateContext initialValue() {
+            return new InflateContext();
+        }
+    };
+
+    private final FBXBuffer data;
+    private final ForkJoinPool pool;
+
+    // Arrays found by a scan but not handed to the pool yet, keyed and so ordered by file position. Guarded by this
+    private final TreeMap<Long, QueuedArray> queuedArrays = new TreeMap();
+    // Arrays on the pool, or inflated and waiting to be picked up. Guarded by this
+    private final TreeMap<Long, QueuedArray> submittedArrays = new TreeMap();
+    private long submittedBytes = 0;
+
+    public FBXArrayInflater(FBXBuffer inputData) {
+        data = inputData;
+        pool = new ForkJoinPool();
+    }
+
+    /** Queue the compressed arrays nested in an object's node for inflation. Only the nodes the definition consumes are
+     * looked at, and never those in skippedNodes. Arrays that still end up unread must be discarded
+     * @param definition The object the node belongs to
+     * @param skippedNodes Nested nodes the import options don't want, indexed by FBXNames ID
+     * @param startPosition Offset of the first node nested in the object
+     * @param endPosition Offset of the end of the object's node */
+    public void scan(FBXObjectDefinition definition, boolean[] skippedNodes, long startPosition, long endPosition) {
+        scanChildren(definition, skippedNodes, startPosition, endPosition);
+        submitQueued();
+    }
+
+    private void scanChildren(FBXObjectDefinition definition, boolean[] skippedNodes, long startPosition, long endPosition) {
+        long position = startPosition;
+        int headerSize = data.recordHeaderSize();
+
+        // Allow for the null record at the end of the node (standard in FBX files)
+        while (endPosition - position > headerSize) {
+            long recordEnd = data.getRecordEnd(position);
+            if (recordEnd <= position || recordEnd > endPosition) {
+                break;
+            }
+
+            // Follow exactly what parsing will visit
+            int nodeID = data.getRecordNameID(position);
+            if (!skippedNodes[nodeID] && definition.consumesNode(nodeID)) {
+                long numProperties = data.getRecordPropertyCount(position);
+                int nameLength = data.getRecordNameLength(position);
+
+                long cursor = position + headerSize + nameLength;
+                for (int i = 0; i < numProperties && cursor >= 0; i++) {
+                    cursor = scanProperty(cursor);
+                }
+
+                // Anything left between the properties and the end of the record is nested records
+                if (cursor >= 0 && recordEnd - cursor > headerSize) {
+                    scanChildren(definition, skippedNodes, cursor, recordEnd);
+                }
+            }
+
+            position = recordEnd;
+        }
+    }
+
+    /* Queue the property if it's a compressed array, and return where the next property starts (or -1 if we can't tell) */
+    private long scanProperty(long position) {
+        int elementSize = 1;
+
+        switch ((char) (data.get(position) & 0xFF)) {
+            case 'C':
+                return position + 2;
+            case 'Y':
+                return position + 3;
+            case 'F':
+            case 'I':
+                return position + 5;
+            case 'D':
+            case 'L':
+                return position + 9;
+            case 'S':
+            case 'R':
+                return position + 5 + data.getInt(position + 1);
+            case 'f':
+            case 'i':
+                elementSize = 4;
+                break;
+            case 'd':
+            case 'l':
+                elementSize = 8;
+                break;
+            case 'b':
+                break;
+            default:
+                return -1;
+        }
+
+        int arrayLength = data.getInt(position + 1);
+        int encoding = data.getInt(position + 5);
+        int compressedSize = data.getInt(position + 9);
+        long inflatedSize = (long) arrayLength * elementSize;
+
+        // Arrays too big for a single Java array are left for the inline path to report
+        if (encoding == 1 && compressedSize >= MIN_PARALLEL_SIZE && arrayLength >= 0 && inflatedSize <= MAX_ARRAY_SIZE) {
+            synchronized (this) {
+                queuedArrays.put(position + 13, new QueuedArray(position + 13, compressedSize, (int) inflatedSize));
+            }
+        }
+        return position + 13 + compressedSize;
+    }
+
+    /** Drop the arrays nested between the two offsets, whether queued, on the pool or waiting to be picked up. Called
+     * once nothing more will be read from an object, so its leftovers stop holding room other arrays could use
+     * @param startPosition Offset of the first node nested in the object
+     * @param endPosition Offset of the end of the object's node */
+    public synchronized void discard(long startPosition, long endPosition) {
+        queuedArrays.subMap(startPosition, endPosition).clear();
+
+        SortedMap<Long, QueuedArray> submitted = submittedArrays.subMap(startPosition, endPosition);
+        for (QueuedArray array : submitted.values()) {
+            array.task.cancel(false);
+            submittedBytes -= array.inflatedSize;
+        }
+        submitted.clear();
+
+        submitQueued();
+    }
+
+    /* Hand queued arrays to the pool, in file order, until the results not yet picked up reach
+     * MAX_SUBMITTED_BYTES. At least one array is always allowed, however big it is */
+    private synchronized void submitQueued() {
+        Iterator<QueuedArray> queued = queuedArrays.values().iterator();
+        while (queued.hasNext()) {
+            QueuedArray next = queued.next();
+            if (submittedBytes > 0 && submittedBytes + next.inflatedSize > MAX_SUBMITTED_BYTES) {
+                break;
+            }
+
+            queued.remove();
+            next.task = pool.submit(new InflateTask(data, next.position, next.compressedSize, next.inflatedSize));
+            submittedArrays.put(next.position, next);
+            submittedBytes += next.inflatedSize;
+        }
+    }
+
+    /** Retrieve an inflated array, waiting for it if it's still being worked on. Returns null if it wasn't handed to
+     * the pool, in which case it should be inflated inline */
+    public byte[] getInflated(long position) {
+        QueuedArray array;
+        synchronized (this) {
+            array = submittedArrays.remove(position);
+            if (array == null) {
+                // Read before its turn came, so it won't be needed later
+                queuedArrays.remove(position);
+                return null;
+            }
+
+            // Picking a result up frees room for more
+            submittedBytes -= array.inflatedSize;
+            submitQueued();
+        }
+        return array.task.join();
+    }
+
+    /** Stop the worker pool once the node has been parsed */
+    public synchronized void shutdown() {
+        queuedArrays.clear();
+        submittedArrays.clear();
+        submittedBytes = 0;
+        pool.shutdown();
+    }
+
+    /** Inflate an array into this thread's scratch space. The returned view is only valid until the next call on the same thread */
+    public static ByteBuffer inflate(FBXBuffer inputData, long position, int compressedSize, int inflatedSize) {
+        InflateContext context = contexts.get();
+
+        byte[] input = context.input(compressedSize);
+        inputData.get(position, input, 0, compressedSize);
+
+        byte[] output = context.output(inflatedSize);
+        inflate(context.inflater, input, compressedSize, output, inflatedSize);
+
+        return ByteBuffer.wrap(output, 0, inflatedSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /* Inflate input into exactly inflatedSize bytes of output. Short or corrupt data leaves the remainder zeroed */
+    private static void inflate(Inflater decompressor, byte[] input, int inputLength, byte[] output, int inflatedSize) {
+        decompressor.reset();
+        decompressor.setInput(input, 0, inputLength);
+
+        int totalInflated = 0;
+        try {
+            while (totalInflated < inflatedSize && !decompressor.finished()) {
+                int count = decompressor.inflate(output, totalInflated, inflatedSize - totalInflated);
+                // Truncated data would otherwise leave us spinning here forever
+                if (count == 0 && (decompressor.needsInput() || decompressor.needsDictionary())) {
+                    break;
+                }
+                totalInflated += count;
+            }
+        } catch (DataFormatException e) {
+            e.printStackTrace();
+        }
+
+        if (totalInflated < inflatedSize) {
+            System.err.println("WARNING: Compressed array ended early, data may be incomplete");
+            Arrays.fill(output, totalInflated, inflatedSize, (byte) 0);
+        }
+    }
+
+    /* Per-thread Inflater and scratch buffers */
+    private static class InflateContext {
+
+        final Inflater inflater = new Inflater();
+        private byte[] input = new byte[0];
+        private byte[] output = new byte[0];
+
+        byte[] input(int size) {
+            if (size > MAX_POOLED_SIZE) {
+                return new byte[size];
+            }
+            if (input.length < size) {
+                input = new byte[size];
+            }
+            return input;
+        }
+
+        byte[] output(int size) {
+            if (size > MAX_POOLED_SIZE) {
+                return new byte[size];
+            }
+            if (output.length < size) {
+                output = new byte[size];
+            }
+            return output;
+        }
+    }
+
+    /* A compressed array found by a scan, and its task once it's been handed to the pool */
+    private static class QueuedArray {
+
+        final long position;
+        final int compressedSize;
+        final int inflatedSize;
+        ForkJoinTask<byte[]> task = null;
+
+        QueuedArray(long inPosition, int inCompressedSize, int inInflatedSize) {
+            position = inPosition;
+            compressedSize = inCompressedSize;
+            inflatedSize = inInflatedSize;
+        }
+    }
+
+    private static class InflateTask extends RecursiveTask<byte[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FBXBuffer data;
+        private final long position;
+        private final int compressedSize;
+        private final int inflatedSize;
+
+        InflateTask(FBXBuffer inputData, long inPosition, int inCompressedSize, int inInflatedSize) {
+            data = inputData;
+            position = inPosition;
+            compressedSize = inCompressedSize;
+            inflatedSize = inInflatedSize;
+        }
+
+        @Override
+        protected byte[] compute() {
+            // The result outlives this task, so it gets an array of its own rather than scratch space
+            InflateContext context = contexts.get();
+            byte[] input = context.input(compressedSize);
+            data.get(position, input, 0, compressedSize);
+
+            byte[] result = new byte[inflatedSize];
+            inflate(context.inflater, input, compressedSize, result, inflatedSize);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,772 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.fbx;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * FBXAsciiTranscoder
+ *
+ * Converts an ASCII FBX file into the binary layout in memory, so it can be read by the same nodes and object
+ * definitions as a binary file. The text is scanned a byte at a time through a small window and written straight
+ * out as binary records. Numbers are parsed without creating Strings, except for the rare values that can't be
+ * converted exactly with a single multiply or divide.
+ *
+ * Numeric lists become arrays, using doubles if any value has a fraction or exponent, otherwise integers. Integers
+ * belonging to objects and connections are always written as longs, as they are UIDs. Names in the form
+ * "Class::Name" are rewritten to the binary "Name\0\1Class" form, and embedded Content is decoded from base64.
+ *
+ * @author Richard Greenlees
+ */
+public class FBXAsciiTranscoder {
+
+    private static final byte[] BINARY_MAGIC = "Kaydara FBX Binary  \0".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VERSION_KEY = "FBXVersion:".getBytes(StandardCharsets.US_ASCII);
+    private static final int DEFAULT_VERSION = 7300;
+
+    // Binary data lives in a single array, so it can't go past the largest array the VM will allocate
+    private static final int MAX_OUTPUT_SIZE = Integer.MAX_VALUE - 8;
+    private static final int WINDOW_SIZE = 1 << 20;
+    // Numbers are parsed straight from the window, so none can be longer than this
+    private static final int MAX_NUMBER_LENGTH = 1024;
+    // Arrays say how long they are up front, but don't trust that too far
+    private static final int MAX_PREALLOCATED_VALUES = 1 << 24;
+
+    // Every double up to 10^22 is exact, so a mantissa under 2^53 scaled by one of these is correctly rounded
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    // What each scanned property holds
+    private static final byte KIND_INTEGER = 0;
+    private static final byte KIND_DOUBLE = 1;
+    private static final byte KIND_STRING = 2;
+    private static final byte KIND_CHAR = 3;
+
+    private static final byte[] OBJECTS = "Objects".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONNECTIONS = "Connections".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT = "Content".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    // The text being read, and the window currently held from it
+    private final FBXBuffer source;
+    private long windowStart = 0;
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private int windowPosition = 0;
+    private int windowLimit = 0;
+
+    // The binary being written
+    private byte[] output;
+    private int outputSize = 0;
+    private final boolean wideRecords;
+    private final int headerSize;
+
+    // The properties of the node being read. Numbers are kept as longs or as the raw bits of doubles, and strings
+    // as an index into stringStarts and stringLengths
+    private int propertyCount = 0;
+    private byte[] propertyKinds = new byte[16];
+    private long[] propertyValues = new long[16];
+    private int stringCount = 0;
+    private int[] stringStarts = new int[16];
+    private int[] stringLengths = new int[16];
+    private byte[] strings = new byte[256];
+    private int stringsSize = 0;
+
+    private final byte[] nodeName = new byte[255];
+
+    private FBXAsciiTranscoder(FBXBuffer inSource, int version) {
+        source = inSource;
+        wideRecords = (version >= 7500);
+        headerSize = wideRecords ? 25 : 13;
+        output = new byte[(int) Math.min(MAX_OUTPUT_SIZE, Math.max(1024, inSource.size()))];
+    }
+
+    /** Does the supplied data start with the binary FBX header? */
+    public static boolean isBinary(FBXBuffer data) {
+        if (data.size() < BINARY_MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < BINARY_MAGIC.length; i++) {
+            if (data.get(i) != BINARY_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Convert the supplied ASCII FBX data to binary FBX
+     * @param asciiData The text of an ASCII FBX file
+     * @return The same file in the binary layout, with its version set
+     * @throws IOException If the text isn't valid ASCII FBX, or is too large to convert */
+    public static FBXBuffer transcode(FBXBuffer asciiData) throws IOException {
+        int version = findVersion(asciiData);
+        FBXAsciiTranscoder transcoder = new FBXAsciiTranscoder(asciiData, version);
+
+        transcoder.writeHeader(version);
+        transcoder.readNodeList(false, false);
+        transcoder.reserve(transcoder.headerSize);
+
+        FBXBuffer result = FBXBuffer.wrap(transcoder.output, transcoder.outputSize);
+        result.setVersion(version);
+        return result;
+    }
+
+    /* The version decides the record layout, so it's needed before anything is written. It's always in the header
+       extension at the start of the file */
+    private static int findVersion(FBXBuffer data) {
+        long searchEnd = Math.min(data.size(), WINDOW_SIZE) - VERSION_KEY.length;
+
+        for (long i = 0; i < searchEnd; i++) {
+            int matched = 0;
+            while (matched < VERSION_KEY.length && data.get(i + matched) == VERSION_KEY[matched]) {
+                matched++;
+            }
+
+            if (matched == VERSION_KEY.length) {
+                long position = i + matched;
+                while (position < data.size() && (data.get(position) == ' ' || data.get(position) == '\t')) {
+                    position++;
+                }
+
+                int version = 0;
+                while (position < data.size() && data.get(position) >= '0' && data.get(position) <= '9') {
+                    version = version * 10 + (data.get(position++) - '0');
+                }
+                return (version > 0) ? version : DEFAULT_VERSION;
+            }
+        }
+
+        System.err.println("WARNING: ASCII FBX file has no FBXVersion, assuming " + DEFAULT_VERSION);
+        return DEFAULT_VERSION;
+    }
+
+    /* Make sure at least count bytes are in the window, unless the file ends first, by moving what's left of it
+     * to the front and reading more behind it
+     * @return False if the file ends before count bytes */
+    private boolean ensureAvailable(int count) {
+        int remaining = windowLimit - windowPosition;
+        if (remaining >= count) {
+            return true;
+        }
+
+        System.arraycopy(window, windowPosition, window, 0, remaining);
+        windowStart += windowPosition;
+        windowPosition = 0;
+
+        int toRead = (int) Math.min(window.length - remaining, source.size() - (windowStart + remaining));
+        if (toRead > 0) {
+            source.get(windowStart + remaining, window, remaining, toRead);
+        }
+        windowLimit = remaining + toRead;
+
+        return windowLimit >= count;
+    }
+
+    /* The next byte without consuming it, or -1 at the end of the file */
+    private int peek() {
+        if (windowPosition == windowLimit && !ensureAvailable(1)) {
+            return -1;
+        }
+        return window[windowPosition] & 0xFF;
+    }
+
+    private int next() {
+        if (windowPosition == windowLimit && !ensureAvailable(1)) {
+            return -1;
+        }
+        return window[windowPosition++] & 0xFF;
+    }
+
+    private long sourcePosition() {
+        return windowStart + windowPosition;
+    }
+
+    private IOException malformed(String message) {
+        return new IOException("Malformed ASCII FBX at offset " + sourcePosition() + ": " + message);
+    }
+
+    /* Skip spaces and tabs, stopping at the end of the line */
+    private int skipInline() {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r') {
+            windowPosition++;
+            c = peek();
+        }
+        return c;
+    }
+
+    /* Skip all whitespace, line breaks and comments */
+    private int skipSpace() {
+        int c = peek();
+        while (true) {
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                windowPosition++;
+            } else if (c == ';') {
+                while (c != '\n' && c != -1) {
+                    windowPosition++;
+                    c = peek();
+                }
+                continue;
+            } else {
+                return c;
+            }
+            c = peek();
+        }
+    }
+
+    /* Read a list of nodes, up to the brace closing the parent or the end of the file
+     * @param uidParent Whether the integers in these nodes are UIDs
+     * @param nested False for the top level list, which ends with the file rather than a brace */
+    private void readNodeList(boolean uidParent, boolean nested) throws IOException {
+        while (true) {
+            int c = skipSpace();
+            if (c == -1) {
+                if (nested) {
+                    throw new EOFException("ASCII FBX ended inside a node");
+                }
+                return;
+            } else if (c == '}') {
+                windowPosition++;
+                if (!nested) {
+                    throw malformed("unexpected '}'");
+                }
+                return;
+            }
+            readNode(uidParent);
+        }
+    }
+
+    private boolean isNodeName(int nameLength, byte[] expected) {
+        if (nameLength != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < nameLength; i++) {
+            if (nodeName[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Read a single node and everything nested in it, writing it out as a binary record */
+    private void readNode(boolean uidParent) throws IOException {
+        int nameLength = 0;
+        int c = next();
+        while (c != ':') {
+            if (c == -1 || c == '\n' || c == '{' || c == '}') {
+                throw malformed("expected ':' after node name");
+            }
+            if (nameLength == nodeName.length) {
+                throw malformed("node name is too long");
+            }
+            nodeName[nameLength++] = (byte) c;
+            c = next();
+        }
+        // Integers in objects and connections are UIDs, which are longs in binary files
+        boolean childrenUseUIDs = isNodeName(nameLength, OBJECTS) || isNodeName(nameLength, CONNECTIONS);
+        boolean isContent = isNodeName(nameLength, CONTENT);
+
+        // Header first, filled in once we know how long everything is
+        int recordStart = reserve(headerSize + nameLength);
+        System.arraycopy(nodeName, 0, output, recordStart + headerSize, nameLength);
+        output[recordStart + headerSize - 1] = (byte) nameLength;
+
+        boolean isArray = readProperties();
+        int propertiesStart = outputSize;
+        int writtenCount = writeProperties(isArray, uidParent, isContent);
+        int propertiesLength = outputSize - propertiesStart;
+
+        if (skipInline() == '{') {
+            windowPosition++;
+            readNodeList(childrenUseUIDs, true);
+            // A null record closes the list of children
+            reserve(headerSize);
+        }
+
+        if (wideRecords) {
+            putLong(recordStart, outputSize);
+            putLong(recordStart + 8, writtenCount);
+            putLong(recordStart + 16, propertiesLength);
+        } else {
+            putInt(recordStart, outputSize);
+            putInt(recordStart + 4, writtenCount);
+            putInt(recordStart + 8, propertiesLength);
+        }
+    }
+
+    /* Read the properties following a node name into the scratch arrays
+     * @return True if they were given as an array ("*count { a: ... }") */
+    private boolean readProperties() throws IOException {
+        propertyCount = 0;
+        stringCount = 0;
+        stringsSize = 0;
+
+        int c = skipInline();
+        if (c != '*') {
+            readValueList();
+            return false;
+        }
+
+        // Arrays give their length, then their values in a nested "a" node
+        windowPosition++;
+        long arrayLength = 0;
+        c = peek();
+        while (c >= '0' && c <= '9') {
+            arrayLength = arrayLength * 10 + (c - '0');
+            windowPosition++;
+            c = peek();
+        }
+        ensurePropertyCapacity((int) Math.min(arrayLength, MAX_PREALLOCATED_VALUES));
+
+        if (skipSpace() != '{') {
+            throw malformed("expected '{' after array length");
+        }
+        windowPosition++;
+        if (skipSpace() != 'a' || next() != 'a' || next() != ':') {
+            throw malformed("expected 'a:' at the start of an array");
+        }
+        readValueList();
+        if (skipSpace() != '}') {
+            throw malformed("expected '}' at the end of an array");
+        }
+        windowPosition++;
+        return true;
+    }
+
+    /* Read comma separated values up to the end of the line. A comma carries the list on over a line break */
+    private void readValueList() throws IOException {
+        int c = skipInline();
+        while (true) {
+            if (c == ',') {
+                windowPosition++;
+                c = skipSpace();
+                continue;
+            }
+            if (c == '{' || c == '}' || c == -1) {
+                return;
+            }
+            if (c == '\n' || c == ';') {
+                // Long lists in older files carry on from the start of the next line
+                c = skipSpace();
+                if (c == ',') {
+                    continue;
+                }
+                return;
+            }
+
+            readValue(c);
+            c = skipInline();
+        }
+    }
+
+    private void readValue(int c) throws IOException {
+        ensurePropertyCapacity(propertyCount + 1);
+
+        if (c == '"') {
+            windowPosition++;
+            int start = stringsSize;
+            c = next();
+            while (c != '"') {
+                if (c == -1) {
+                    throw new EOFException("ASCII FBX ended inside a string");
+                }
+                appendString(c);
+                c = next();
+            }
+            addString(KIND_STRING, start);
+        } else if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.') {
+            readNumber();
+        } else if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_') {
+            // Bare words. Single letters are flags such as "Shading: Y", stored as a char
+            int start = stringsSize;
+            while ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_') {
+                appendString(c);
+                windowPosition++;
+                c = peek();
+            }
+            addString((stringsSize - start == 1) ? KIND_CHAR : KIND_STRING, start);
+        } else {
+            throw malformed("unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void addString(byte kind, int start) {
+        if (stringCount == stringStarts.length) {
+            stringStarts = Arrays.copyOf(stringStarts, stringCount * 2);
+            stringLengths = Arrays.copyOf(stringLengths, stringCount * 2);
+        }
+        stringStarts[stringCount] = start;
+        stringLengths[stringCount] = stringsSize - start;
+
+        propertyKinds[propertyCount] = kind;
+        propertyValues[propertyCount] = stringCount++;
+        propertyCount++;
+    }
+
+    /* Parse a number in place. Integers are kept exactly, anything with a fraction or exponent becomes a double */
+    private void readNumber() throws IOException {
+        // Numbers are parsed straight out of the window, so make sure the whole thing is in it
+        ensureAvailable(MAX_NUMBER_LENGTH);
+        byte[] text = window;
+        int start = windowPosition;
+        int position = start;
+        int limit = windowLimit;
+
+        boolean negative = false;
+        boolean isDouble = false;
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        // Set when digits had to be dropped from the mantissa, so the fast conversion isn't exact
+        boolean truncated = false;
+
+        int c = (position < limit) ? text[position] : -1;
+        if (c == '-' || c == '+') {
+            negative = (c == '-');
+            c = (++position < limit) ? text[position] : -1;
+        }
+        int digitsStart = position;
+
+        while (c >= '0' && c <= '9') {
+            if (significantDigits < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    significantDigits++;
+                }
+            } else {
+                exponent++;
+                truncated = true;
+            }
+            c = (++position < limit) ? text[position] : -1;
+        }
+
+        if (c == '.') {
+            isDouble = true;
+            c = (++position < limit) ? text[position] : -1;
+
+            while (c >= '0' && c <= '9') {
+                if (significantDigits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    exponent--;
+                    if (mantissa != 0) {
+                        significantDigits++;
+                    }
+                } else if (c != '0') {
+                    truncated = true;
+                }
+                c = (++position < limit) ? text[position] : -1;
+            }
+        }
+
+        if (position == digitsStart || (position == digitsStart + 1 && isDouble)) {
+            throw malformed("expected a number");
+        }
+
+        if (c == 'e' || c == 'E') {
+            isDouble = true;
+            c = (++position < limit) ? text[position] : -1;
+
+            boolean negativeExponent = false;
+            if (c == '-' || c == '+') {
+                negativeExponent = (c == '-');
+                c = (++position < limit) ? text[position] : -1;
+            }
+
+            int writtenExponent = 0;
+            while (c >= '0' && c <= '9') {
+                if (writtenExponent < 10000) {
+                    writtenExponent = writtenExponent * 10 + (c - '0');
+                }
+                c = (++position < limit) ? text[position] : -1;
+            }
+            exponent += negativeExponent ? -writtenExponent : writtenExponent;
+        }
+
+        if (position - start >= MAX_NUMBER_LENGTH) {
+            throw malformed("number is too long");
+        }
+        windowPosition = position;
+
+        if (!isDouble) {
+            propertyKinds[propertyCount] = KIND_INTEGER;
+            if (!truncated) {
+                propertyValues[propertyCount] = negative ? -mantissa : mantissa;
+                propertyCount++;
+                return;
+            }
+
+            // Too many digits to be sure of, but UIDs can use the whole range of a long
+            try {
+                long value = Long.parseLong(new String(text, digitsStart, position - digitsStart, StandardCharsets.US_ASCII));
+                propertyValues[propertyCount] = negative ? -value : value;
+                propertyCount++;
+                return;
+            } catch (NumberFormatException e) {
+                // Bigger than a long, so it can only be a double
+            }
+        }
+
+        double value;
+        if (!truncated && mantissa < MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            value = (exponent < 0) ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            if (negative) {
+                value = -value;
+            }
+        } else {
+            String number = new String(text, start, position - start, StandardCharsets.US_ASCII);
+            try {
+                value = Double.parseDouble(number);
+            } catch (NumberFormatException e) {
+                throw malformed("invalid number " + number);
+            }
+        }
+
+        propertyKinds[propertyCount] = KIND_DOUBLE;
+        propertyValues[propertyCount] = Double.doubleToRawLongBits(value);
+        propertyCount++;
+    }
+
+    private void appendString(int c) {
+        if (stringsSize == strings.length) {
+            strings = Arrays.copyOf(strings, Math.max(256, (int) Math.min(MAX_OUTPUT_SIZE, strings.length * 2L)));
+        }
+        strings[stringsSize++] = (byte) c;
+    }
+
+    private void ensurePropertyCapacity(int capacity) {
+        if (capacity > propertyKinds.length) {
+            int newCapacity = (int) Math.min(MAX_OUTPUT_SIZE, Math.max(capacity, propertyKinds.length * 2L));
+            propertyKinds = Arrays.copyOf(propertyKinds, newCapacity);
+            propertyValues = Arrays.copyOf(propertyValues, newCapacity);
+        }
+    }
+
+    private void writeHeader(int version) throws IOException {
+        int start = reserve(27);
+        System.arraycopy(BINARY_MAGIC, 0, output, start, BINARY_MAGIC.length);
+        output[start + 21] = 0x1A;
+        putInt(start + 23, version);
+    }
+
+    /* Write the scanned properties as binary properties
+     * @return How many properties were written */
+    private int writeProperties(boolean isArray, boolean uidParent, boolean isContent) throws IOException {
+        if (propertyCount == 0 && !isArray) {
+            return 0;
+        }
+
+        boolean allNumeric = true;
+        boolean anyDouble = false;
+        boolean allInts = true;
+        for (int i = 0; i < propertyCount; i++) {
+            byte kind = propertyKinds[i];
+            if (kind == KIND_DOUBLE) {
+                anyDouble = true;
+            } else if (kind == KIND_INTEGER) {
+                long value = propertyValues[i];
+                allInts &= (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE);
+            } else {
+                allNumeric = false;
+            }
+        }
+
+        // Numeric lists become arrays, as long as there's more than one value. Older files list their geometry like this
+        if (isArray || (allNumeric && propertyCount > 1)) {
+            if (!allNumeric) {
+                throw malformed("array contains non-numeric values");
+            }
+            writeArray(anyDouble, allInts);
+            return 1;
+        }
+
+        // Embedded media is base64 text, possibly split across several strings
+        if (isContent && stringsSize > 0) {
+            writeBase64(strings, 0, stringsSize);
+            return 1;
+        }
+
+        for (int i = 0; i < propertyCount; i++) {
+            switch (propertyKinds[i]) {
+                case KIND_INTEGER:
+                    long value = propertyValues[i];
+                    if (uidParent || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                        int position = reserve(9);
+                        output[position] = 'L';
+                        putLong(position + 1, value);
+                    } else {
+                        int position = reserve(5);
+                        output[position] = 'I';
+                        putInt(position + 1, (int) value);
+                    }
+                    break;
+                case KIND_DOUBLE:
+                    int doublePosition = reserve(9);
+                    output[doublePosition] = 'D';
+                    putLong(doublePosition + 1, propertyValues[i]);
+                    break;
+                case KIND_CHAR:
+                    int charPosition = reserve(2);
+                    output[charPosition] = 'C';
+                    output[charPosition + 1] = strings[stringStarts[(int) propertyValues[i]]];
+                    break;
+                default:
+                    writeString(stringStarts[(int) propertyValues[i]], stringLengths[(int) propertyValues[i]]);
+                    break;
+            }
+        }
+        return propertyCount;
+    }
+
+    private void writeArray(boolean asDoubles, boolean asInts) throws IOException {
+        char typeCode = asDoubles ? 'd' : (asInts ? 'i' : 'l');
+        int elementSize = (typeCode == 'i') ? 4 : 8;
+        long payloadSize = (long) propertyCount * elementSize;
+
+        if (outputSize + 13 + payloadSize > MAX_OUTPUT_SIZE) {
+            throw new IOException("ASCII FBX is too large to convert, it would be over 2GB as binary");
+        }
+
+        int position = reserve(13 + (int) payloadSize);
+        output[position] = (byte) typeCode;
+        putInt(position + 1, propertyCount);
+        putInt(position + 5, 0);
+        putInt(position + 9, (int) payloadSize);
+        position += 13;
+
+        for (int i = 0; i < propertyCount; i++) {
+            long value = propertyValues[i];
+            switch (typeCode) {
+                case 'd':
+                    if (propertyKinds[i] == KIND_INTEGER) {
+                        value = Double.doubleToRawLongBits(value);
+                    }
+                    putLong(position, value);
+                    break;
+                case 'i':
+                    putInt(position, (int) value);
+                    break;
+                default:
+                    putLong(position, value);
+                    break;
+            }
+            position += elementSize;
+        }
+    }
+
+    /* Strings in the form "Class::Name" are stored in binary files as "Name\0\1Class" */
+    private void writeString(int start, int length) throws IOException {
+        int separator = -1;
+        for (int i = start; i < start + length - 1; i++) {
+            byte b = strings[i];
+            if (b == ':' && strings[i + 1] == ':') {
+                separator = i;
+                break;
+            }
+            if (!((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '_')) {
+                break;
+            }
+        }
+
+        int position = reserve(5 + length);
+        output[position] = 'S';
+        putInt(position + 1, length);
+        position += 5;
+
+        if (separator < 0) {
+            System.arraycopy(strings, start, output, position, length);
+            return;
+        }
+
+        // Same length either way, as the two separator bytes replace the "::"
+        int classLength = separator - start;
+        int nameStart = separator + 2;
+        int nameLength = start + length - nameStart;
+        System.arraycopy(strings, nameStart, output, position, nameLength);
+        output[position + nameLength] = 0;
+        output[position + nameLength + 1] = 1;
+        System.arraycopy(strings, start, output, position + nameLength + 2, classLength);
+    }
+
+    /* Decode base64 text into a raw binary property, ignoring anything outside the alphabet */
+    private void writeBase64(byte[] text, int start, int length) throws IOException {
+        int position = reserve(5 + (length / 4) * 3 + 3);
+        output[position] = 'R';
+        int dataStart = position + 5;
+        int written = dataStart;
+
+        int bits = 0;
+        int bitCount = 0;
+        for (int i = start; i < start + length; i++) {
+            int c = text[i];
+            if (c < 0 || c >= 128 || BASE64_VALUES[c] < 0) {
+                continue;
+            }
+            bits = (bits << 6) | BASE64_VALUES[c];
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                output[written++] = (byte) (bits >> bitCount);
+            }
+        }
+
+        putInt(position + 1, written - dataStart);
+        outputSize = written;
+    }
+
+    /* Make room for length bytes at the end of the output, returning where they start. New space is zeroed */
+    private int reserve(int length) throws IOException {
+        long required = (long) outputSize + length;
+        if (required > MAX_OUTPUT_SIZE) {
+            throw new IOException("ASCII FBX is too large to convert, it would be over 2GB as binary");
+        }
+        if (required > output.length) {
+            output = Arrays.copyOf(output, (int) Math.min(MAX_OUTPUT_SIZE, Math.max(required, output.length * 2L)));
+        }
+
+        int start = outputSize;
+        outputSize = (int) required;
+        return start;
+    }
+
+    private void putInt(int position, int value) {
+        output[position] = (byte) value;
+        output[position + 1] = (byte) (value >> 8);
+        output[position + 2] = (byte) (value >> 16);
+        output[position + 3] = (byte) (value >> 24);
+    }
+
+    private void putLong(int position, long value) {
+        putInt(position, (int) value);
+        putInt(position + 4, (int) (value >>> 32));
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.fbx;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * FBXBuffer
+ * 
+ * A read-only, little-endian view over the bytes of an FBX file, addressed with 64-bit offsets. Files are memory
+ * mapped rather than read onto the heap, so repeat loads of the same file are served straight from the OS page cache.
+ * A single mapping can't exceed 2GB, so larger files are mapped as a series of regions. Each region overlaps the
+ * next slightly so that reading a single value never has to straddle two of them.
+ * 
+ * The buffer also knows the record layout of the file it holds. Version 7500 and later use 64-bit record headers
+ * (and a 25-byte null record), earlier versions use 32-bit headers and a 13-byte null record.
+ * 
+ * @author Richard Greenlees
+ */
+public class FBXBuffer {
+
+    private static final int REGION_SHIFT = 30;
+    private static final long REGION_SIZE = 1L << REGION_SHIFT;
+    private static final long REGION_MASK = REGION_SIZE - 1;
+    private static final int REGION_OVERLAP = 1 << 16;
+
+    private final ByteBuffer[] regions;
+    private final long size;
+    // True if the data is a mapped file rather than an array on the heap
+    private final boolean mapped;
+
+    // True for FBX 7500 and later, where record headers use 64-bit fields
+    private boolean wideRecords = false;
+
+    // Set while compressed arrays are being inflated ahead of time on a worker pool
+    private FBXArrayInflater arrayInflater = null;
+
+    private FBXBuffer(ByteBuffer[] inRegions, long inSize, boolean inMapped) {
+        regions = inRegions;
+        size = inSize;
+        mapped = inMapped;
+    }
+
+    /** Memory map the supplied file. The mapping stays valid after the file itself has been closed */
+    public static FBXBuffer map(String fileName) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+                FileChannel channel = file.getChannel()) {
+            long fileSize = channel.size();
+            ByteBuffer[] mappedRegions = new ByteBuffer[numRegions(fileSize)];
+
+            for (int i = 0; i < mappedRegions.length; i++) {
+                long regionStart = (long) i << REGION_SHIFT;
+                long regionLength = Math.min(REGION_SIZE + REGION_OVERLAP, fileSize - regionStart);
+                mappedRegions[i] = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionLength).order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            return new FBXBuffer(mappedRegions, fileSize, true);
+        }
+    }
+
+    /** Wrap data that is already on the heap */
+    public static FBXBuffer wrap(byte[] data) {
+        return wrap(data, data.length);
+    }
+
+    /** Wrap the first length bytes of data that is already on the heap */
+    public static FBXBuffer wrap(byte[] data, int length) {
+        ByteBuffer[] heapRegions = new ByteBuffer[numRegions(length)];
+
+        for (int i = 0; i < heapRegions.length; i++) {
+            int regionStart = i << REGION_SHIFT;
+            int regionLength = (int) Math.min(REGION_SIZE + REGION_OVERLAP, length - regionStart);
+            heapRegions[i] = ByteBuffer.wrap(data, regionStart, regionLength).slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        return new FBXBuffer(heapRegions, length, false);
+    }
+
+    private static int numRegions(long dataSize) {
+        return (int) ((dataSize + REGION_SIZE - 1) >>> REGION_SHIFT);
+    }
+
+    private ByteBuffer region(long position) {
+        return regions[(int) (position >>> REGION_SHIFT)];
+    }
+
+    private static int local(long position) {
+        return (int) (position & REGION_MASK);
+    }
+
+    /** Is the data a memory mapped file? Views of mapped data don't hold anything on the heap */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /** Total size of the data in bytes */
+    public long size() {
+        return size;
+    }
+
+    public byte get(long position) {
+        return region(position).get(local(position));
+    }
+
+    public short getShort(long position) {
+        return region(position).getShort(local(position));
+    }
+
+    public int getInt(long position) {
+        return region(position).getInt(local(position));
+    }
+
+    /** Read a 32-bit value as unsigned, as used for offsets in the FBX format */
+    public long getUnsignedInt(long position) {
+        return getInt(position) & 0xFFFFFFFFL;
+    }
+
+    public long getLong(long position) {
+        return region(position).getLong(local(position));
+    }
+
+    public float getFloat(long position) {
+        return region(position).getFloat(local(position));
+    }
+
+    public double getDouble(long position) {
+        return region(position).getDouble(local(position));
+    }
+
+    /** Copy a range of bytes into the supplied array, crossing region boundaries if needed */
+    public void get(long position, byte[] destination, int offset, int length) {
+        while (length > 0) {
+            ByteBuffer source = region(position).duplicate();
+            int start = local(position);
+            int count = Math.min(length, source.limit() - start);
+
+            source.position(start);
+            source.get(destination, offset, count);
+
+            position += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /** Little-endian view over a range of the data. Ranges that cross a region boundary have to be copied first */
+    public ByteBuffer view(long position, int length) {
+        ByteBuffer source = region(position);
+        int start = local(position);
+
+        if (start + length > source.limit()) {
+            return ByteBuffer.wrap(getBytes(position, length)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        ByteBuffer result = source.duplicate();
+        result.limit(start + length);
+        result.position(start);
+        return result.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /** Set the FBX version of the data, which decides the record layout */
+    public void setVersion(int version) {
+        wideRecords = (version >= 7500);
+    }
+
+    /** Size of a record header up to the name, which is also the size of the null record closing a list of children */
+    public int recordHeaderSize() {
+        return wideRecords ? 25 : 13;
+    }
+
+    /** Absolute offset of the end of the record starting at position */
+    public long getRecordEnd(long position) {
+        return wideRecords ? getLong(position) : getUnsignedInt(position);
+    }
+
+    /** Number of properties held by the record starting at position */
+    public long getRecordPropertyCount(long position) {
+        return wideRecords ? getLong(position + 8) : getUnsignedInt(position + 4);
+    }
+
+    /** Length in bytes of the property list of the record starting at position */
+    public long getRecordPropertyListLength(long position) {
+        return wideRecords ? getLong(position + 16) : getUnsignedInt(position + 8);
+    }
+
+    /** Length of the name of the record starting at position */
+    public int getRecordNameLength(long position) {
+        return get(position + recordHeaderSize() - 1) & 0xFF;
+    }
+
+    /** Name of the record starting at position */
+    public String getRecordName(long position) {
+        return new String(getBytes(position + recordHeaderSize(), getRecordNameLength(position)));
+    }
+
+    /** Offset of the first child of the record starting at position, just past its properties */
+    public long getRecordChildrenOffset(long position) {
+        return position + recordHeaderSize() + getRecordNameLength(position) + getRecordPropertyListLength(position);
+    }
+
+    /** FBXNames ID of the name of the record starting at position, found without copying the name out */
+    public int getRecordNameID(long position) {
+        return FBXNames.lookup(this, position + recordHeaderSize(), getRecordNameLength(position));
+    }
+
+    /** The inflater working ahead on compressed arrays, or null if they're inflated inline */
+    public FBXArrayInflater getArrayInflater() {
+        return arrayInflater;
+    }
+
+    /** Use the supplied inflater's results for compressed arrays, or null to go back to inflating them inline */
+    public void setArrayInflater(FBXArrayInflater inflater) {
+        arrayInflater = inflater;
+    }
+
+    /** Inflate a deflate-compressed range of the data into a little-endian view of exactly inflatedSize bytes.
+     * The view may be per-thread scratch space, so consume it before inflating anything else */
+    public ByteBuffer inflate(long position, int compressedSize, int inflatedSize) {
+        if (arrayInflater != null) {
+            byte[] inflated = arrayInflater.getInflated(position);
+            if (inflated != null) {
+                return ByteBuffer.wrap(inflated).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        return FBXArrayInflater.inflate(this, position, compressedSize, inflatedSize);
+    }
+
+    /** Copy a range of bytes out into a new array */
+    public byte[] getBytes(long position, int length) {
+        byte[] result = new byte[length];
+        get(position, result, 0, length);
+        return result;
+    }
+}
@@ -18,31 +18,30 @@
  */
 package com.jumi.fbx;
 
+import com.jumi.JUMIImportOptions;
 import com.jumi.JUMILoader;
 import com.jumi.fbx.node.FBXConnectionsNode;
-import static com.jumi.fbx.node.FBXNode.retrieveBytesFrom;
 import com.jumi.fbx.node.FBXObjectNode;
-import com.jumi.fbx.objects.FBXConnection;
+import com.jumi.fbx.objects.definitions.FBXMediaDefinition;
 import com.jumi.fbx.objects.definitions.FBXModelDefinition;
 import com.jumi.fbx.objects.definitions.FBXObjectDefinition;
 import com.jumi.fbx.objects.definitions.FBXTextureDefinition;
 import com.jumi.scene.JUMIScene;
+import com.jumi.scene.JUMITextureBlobTable;
 import com.jumi.scene.objects.JUMIMesh;
 import com.jumi.scene.objects.JUMITexture;
-import java.io.BufferedInputStream;
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 /**
  * FBXLoader
  * 
  * The main FBX loading class. Can be invoked directly if the user wishes, but is normally invoked by JUMILoader.
- * Parses the supplied FBX binary file and returns a JUMIScene object.
+ * Parses the supplied FBX file and returns a JUMIScene object. ASCII files are converted to binary first.
  * 
  * @author Richard Greenlees
  */
@@ -55,86 +54,175 @@ public class FBXLoader extends JUMILoader {
      * @throws IOException 
      */
     public static JUMIScene importModel(String fileName) throws IOException {
-        FBXObjectNode objectsNode = null;
-        FBXConnectionsNode connectionsNode = null;
+        return importModel(fileName, new JUMIImportOptions());
+    }
 
-        ArrayList<JUMIMesh> allMeshes = new ArrayList();
-        ArrayList<JUMITexture> allTextures = new ArrayList();
+    /** Import a FBX binary or ASCII file, parse it and return a JUMIScene object containing the scene data
+     * 
+     * @param fileName Location of the FBX file to load
+     * @param options What to import. Anything not wanted is skipped during parsing. Parallel inflation is worthwhile
+     * for large, geometry-heavy files
+     * @return JUMIScene containing scene data
+     * @throws IOException 
+     */
+    public static JUMIScene importModel(String fileName, JUMIImportOptions options) throws IOException {
+        // Map the file rather than reading it onto the heap, so the OS page cache can serve repeat loads
+        FBXBuffer fileData = FBXBuffer.map(fileName);
+
+        // ASCII files are converted to the binary layout up front, so everything after this reads them the same way
+        if (!FBXAsciiTranscoder.isBinary(fileData)) {
+            fileData = FBXAsciiTranscoder.transcode(fileData);
+        }
 
-        byte[] mybytes = readBytes(fileName);
+        if (fileData.size() < 27) {
+            throw new EOFException("File is too short to be a binary FBX: " + fileName);
+        }
 
         // Read bytes 23 - 26 to retrieve version number
-        byte[] versionData = retrieveBytesFrom(mybytes, 4, 23);
-        int version = ByteBuffer.wrap(versionData).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        int version = fileData.getInt(23);
 
         float versionID = (float) version / 1000.0f;
 
+        // 7500 and later use 64-bit record headers
+        fileData.setVersion(version);
+
         if (version < 7100) {
             String file = fileName.substring(fileName.lastIndexOf("/") + 1, fileName.length());
             System.out.println("WARNING: Asset " + file + " uses an older version of the FBX SDK (" + versionID + "), animation data will not be imported.");
             System.out.println("\tFor best results, please use 7.1 (SDK 2010) or later.");
-        } else if (version > 7300) {
+        } else if (version > 7700) {
+            // 7.7 is the newest layout known to use the same 64-bit record headers as 7.5
             String file = fileName.substring(fileName.lastIndexOf("/") + 1, fileName.length());
-            System.out.println("WARNING: Asset " + file + " uses a newer version of the FBX SDK (" + versionID + ") than the max supported version (7.3), this may produce unexpected results.");
-            System.out.println("\tFor best results, please use 7.3 (SDK 2011).");
+            System.out.println("WARNING: Asset " + file + " uses a newer version of the FBX SDK (" + versionID + ") than the max supported version (7.7), this may produce unexpected results.");
+            System.out.println("\tFor best results, please use 7.7 (SDK 2019) or earlier.");
         }
 
-        // Start reading the binary data at byte 27, the first byte after the header
-        int offset = 27;
+        // Compressed arrays are decoded when first read, which can be as late as building the meshes, so the inflater
+        // has to stay around until the scene is finished
+        FBXArrayInflater arrayInflater = null;
+        if (options.parallelInflation) {
+            arrayInflater = new FBXArrayInflater(fileData);
+            fileData.setArrayInflater(arrayInflater);
+        }
+
+        try {
+            return buildScene(fileName, fileData, options);
+        } finally {
+            if (arrayInflater != null) {
+                fileData.setArrayInflater(null);
+                arrayInflater.shutdown();
+            }
+        }
+    }
 
-        while (true) {
-            int endOffset;
+    /* Walk the top level nodes, parsing the objects and their connections, then turn the results into a scene */
+    private static JUMIScene buildScene(String fileName, FBXBuffer fileData, JUMIImportOptions options) throws IOException {
+        FBXObjectNode objectsNode = null;
+        FBXConnectionsNode connectionsNode = null;
 
-            // Retrieve the end point of the next FBX node
-            byte[] offsetData = retrieveBytesFrom(mybytes, 4, offset);
-            endOffset = ByteBuffer.wrap(offsetData).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        ArrayList<JUMIMesh> allMeshes = new ArrayList();
+        ArrayList<JUMITexture> allTextures = new ArrayList();
+
+        int headerSize = fileData.recordHeaderSize();
+
+        // Start reading the binary data at byte 27, the first byte after the header
+        long offset = 27;
+
+        while (offset + headerSize <= fileData.size()) {
+            // Retrieve the end point of the next FBX node. 64-bit in 7500+ files, otherwise unsigned 32-bit (up to 4GB)
+            long endOffset = fileData.getRecordEnd(offset);
 
             // This shouldn't happen but you never know...
             if (endOffset <= 0) {
                 break;
             }
 
-            // Retrieve the data for the next node, using the calculated endoffset
-            // TODO: Handle this better so we're not storing the data twice in memory (once in mybytes and once here)
-            byte[] nextNodeData = retrieveBytesFrom(mybytes, endOffset - offset, offset);
+            if (endOffset <= offset || endOffset > fileData.size()) {
+                throw new EOFException("Node at offset " + offset + " ends outside of the file: " + fileName);
+            }
 
             // Retrieve the length in bytes of the next node's name
-            int nextNodeNameLength = nextNodeData[12];
-            // Retrieve the name data
-            byte[] nextNodeNameData = retrieveBytesFrom(nextNodeData, nextNodeNameLength, 13);
+            int nextNodeNameLength = fileData.getRecordNameLength(offset);
+            // Identify the node from its name data
+            int nextNodeID = fileData.getRecordNameID(offset);
 
-            String nextNodeName = new String(nextNodeNameData);
+            // Nodes are parsed in place as a window over the file data, nothing is copied onto the heap
+            long propertyOffset = offset + headerSize + nextNodeNameLength;
 
             // The Objects node holds all the definitions
-            if (nextNodeName.equals("Objects")) {
-                objectsNode = new FBXObjectNode(nextNodeData, (nextNodeNameLength + 13));
-                objectsNode.parseData(nextNodeData, (nextNodeNameLength + 13));
+            if (nextNodeID == FBXNames.OBJECTS) {
+                // The node queues the compressed arrays its objects will read on the buffer's inflater, if it has one
+                objectsNode = new FBXObjectNode(fileData, offset, endOffset, options);
+                objectsNode.parseData(fileData, propertyOffset);
             // The Connections node hooks the objects together to create useful data structures
-            } else if (nextNodeName.equals("Connections")) {
-                connectionsNode = new FBXConnectionsNode(nextNodeData, (nextNodeNameLength + 13));
-                connectionsNode.parseData(nextNodeData, (nextNodeNameLength + 13));
+            } else if (nextNodeID == FBXNames.CONNECTIONS) {
+                connectionsNode = new FBXConnectionsNode(fileData, offset, endOffset);
+                connectionsNode.parseData(fileData, propertyOffset);
             // This is the deprecated animation system, but is still present. Once we reach this point we've parsed all useful data
             // TODO: Handle this better so we're not reliant on the Takes node to determine when we've finished parsing the file
-            } else if (nextNodeName.equals("Takes")) {
+            } else if (nextNodeID == FBXNames.TAKES) {
                 break;
             }
 
             offset = endOffset;
         }
 
+        // Embedded files are often repeated, so every copy of the same bytes shares one blob. This has to happen before
+        // the connections hand the content on to the textures
+        JUMITextureBlobTable textureBlobs = new JUMITextureBlobTable();
+        for (FBXMediaDefinition a : objectsNode.media) {
+            a.shareContent(textureBlobs);
+        }
+
         // For each connection defined in the Connections node, hook them up
-        for (FBXConnection connection : connectionsNode.connections) {
-            FBXObjectDefinition a = objectsNode.getConnectable(connection.getLeftUID());
-            FBXObjectDefinition b = objectsNode.getConnectable(connection.getRightUID());
+        for (int i = 0; i < connectionsNode.count; i++) {
+            FBXObjectDefinition a;
+            FBXObjectDefinition b;
+
+            // Connections in older files name the objects rather than giving their UIDs
+            if (connectionsNode.isNamed(i)) {
+                a = objectsNode.getConnectable(connectionsNode.getLeftName(i));
+                b = objectsNode.getConnectable(connectionsNode.getRightName(i));
+            } else {
+                a = objectsNode.getConnectable(connectionsNode.left[i]);
+                b = objectsNode.getConnectable(connectionsNode.right[i]);
+            }
 
             if (a != null && b != null) {
                 a.connect(b);
             }
         }
 
-        // Retrieve all the model definitions and turn them into JUMIMeshes
-        for (FBXModelDefinition a : objectsNode.getMeshDefinitions()) {
-            allMeshes.add(a.createMesh());
+        // Retrieve all the model definitions and turn them into JUMIMeshes. Geometry is only decoded when its mesh is
+        // created, so meshes that don't pass the name filter never have their arrays touched
+        ArrayList<FBXModelDefinition> meshDefinitions = objectsNode.getMeshDefinitions();
+        FBXArrayInflater arrayInflater = fileData.getArrayInflater();
+
+        // Arrays queued for geometry that won't be decoded would otherwise hold up the geometry that will
+        if (arrayInflater != null) {
+            Set<FBXModelDefinition> decodedGeometry = Collections.newSetFromMap(new IdentityHashMap<FBXModelDefinition, Boolean>());
+            for (FBXModelDefinition a : meshDefinitions) {
+                if (options.acceptsName(a.name)) {
+                    decodedGeometry.add(a.findMeshData());
+                }
+            }
+            for (FBXModelDefinition a : objectsNode.geometries) {
+                if (!decodedGeometry.contains(a)) {
+                    arrayInflater.discard(a.startOffset, a.endOffset);
+                }
+            }
+        }
+
+        for (FBXModelDefinition a : meshDefinitions) {
+            if (options.acceptsName(a.name)) {
+                FBXModelDefinition meshData = a.findMeshData();
+                allMeshes.add(a.createMesh());
+
+                // Whatever the geometry didn't read won't be read now
+                if (arrayInflater != null) {
+                    arrayInflater.discard(meshData.startOffset, meshData.endOffset);
+                }
+            }
         }
 
         // Retrieve all texture definitions that don't have a parent mesh and turn them into JUMITextures
@@ -146,25 +234,7 @@ public class FBXLoader extends JUMILoader {
         JUMIScene result = new JUMIScene();
         result.addMeshes(allMeshes);
         result.addTextures(allTextures);
-        return result;
-    }
-
-    /** Read the supplied file and extract the binary data from it */
-    protected static byte[] readBytes(String aInputFileName) throws IOException {
-        File file = new File(aInputFileName);
-        byte[] result = new byte[(int) file.length()];
-
-        int totalBytesRead = 0;
-        try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
-            while (totalBytesRead < result.length) {
-                int bytesRemaining = result.length - totalBytesRead;
-                int bytesRead = input.read(result, totalBytesRead, bytesRemaining);
-                if (bytesRead > 0) {
-                    totalBytesRead = totalBytesRead + bytesRead;
-                }
-            }
-        }
-        
+        result.addTextureBlobs(textureBlobs.getBlobs());
         return result;
     }
     
@@ -0,0 +1,279 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.fbx;
+
+/**
+ * FBXNames
+ * 
+ * A fixed table of the record names and property strings the importer understands, each mapped to a small integer ID.
+ * Names are looked up straight from the raw bytes of the file, so dispatching on a record or property name never
+ * creates a String. Anything not in the table is UNKNOWN.
+ * 
+ * @author Richard Greenlees
+ */
+public class FBXNames {
+
+    public static final int UNKNOWN = 0;
+
+    // Top level nodes
+    public static final int OBJECTS = 1;
+    public static final int CONNECTIONS = 2;
+    public static final int TAKES = 3;
+
+    // Children of the Objects node
+    public static final int MODEL = 4;
+    public static final int GEOMETRY = 5;
+    public static final int MATERIAL = 6;
+    public static final int TEXTURE = 7;
+    public static final int VIDEO = 8;
+    public static final int DEFORMER = 9;
+    public static final int ANIMATION_STACK = 10;
+    public static final int ANIMATION_LAYER = 11;
+    public static final int ANIMATION_CURVE_NODE = 12;
+    public static final int ANIMATION_CURVE = 13;
+
+    // Object sub-types
+    public static final int LIMB_NODE = 14;
+    public static final int SHAPE = 15;
+    public static final int MESH = 16;
+    public static final int SKIN = 17;
+    public static final int CLUSTER = 18;
+
+    // Connections
+    public static final int C = 19;
+    public static final int CONNECT = 20;
+    public static final int OO = 21;
+    public static final int OP = 22;
+
+    // Embedded properties
+    public static final int PROPERTIES60 = 23;
+    public static final int PROPERTIES70 = 24;
+    public static final int P = 25;
+    public static final int PROPERTY = 26;
+
+    // Animation curves
+    public static final int KEY_TIME = 27;
+    public static final int KEY_VALUE_FLOAT = 28;
+    public static final int KEY_ATTR_FLAGS = 29;
+    public static final int KEY_ATTR_DATA_FLOAT = 30;
+    public static final int KEY_ATTR_REF_COUNT = 31;
+
+    // Clusters
+    public static final int INDEXES = 32;
+    public static final int WEIGHTS = 33;
+    public static final int TRANSFORM = 34;
+    public static final int TRANSFORM_LINK = 35;
+
+    // Media
+    public static final int CONTENT = 36;
+
+    // Geometry
+    public static final int VERTICES = 37;
+    public static final int POLYGON_VERTEX_INDEX = 38;
+    public static final int LAYER_ELEMENT_NORMAL = 39;
+    public static final int NORMALS = 40;
+    public static final int LAYER_ELEMENT_UV = 41;
+    public static final int UV = 42;
+    public static final int UV_INDEX = 43;
+
+    // Skin deformers
+    public static final int LINK_DEFORM_ACURACY = 44;
+
+    // Textures
+    public static final int TYPE = 45;
+    public static final int TEXTURE_NAME = 46;
+    public static final int FILE_NAME = 47;
+    public static final int RELATIVE_FILENAME = 48;
+
+    // Limb node properties
+    public static final int LCL_TRANSLATION = 49;
+    public static final int LCL_ROTATION = 50;
+    public static final int LCL_SCALING = 51;
+
+    // Animation curve node properties
+    public static final int D_X = 52;
+    public static final int D_Y = 53;
+    public static final int D_Z = 54;
+
+    // Material properties
+    public static final int COLOR = 55;
+    public static final int COLOR_RGB = 56;
+    public static final int AMBIENT = 57;
+    public static final int AMBIENT_COLOR = 58;
+    public static final int SPECULAR = 59;
+    public static final int SPECULAR_COLOR = 60;
+    public static final int DIFFUSE = 61;
+    public static final int DIFFUSE_COLOR = 62;
+    public static final int EMISSIVE = 63;
+    public static final int EMISSIVE_COLOR = 64;
+    public static final int TRANSPARENCY_FACTOR = 65;
+    public static final int SPECULAR_FACTOR = 66;
+    public static final int REFLECTION_FACTOR = 67;
+    public static final int SHININESS = 68;
+    public static final int OPACITY = 69;
+    public static final int REFLECTIVITY = 70;
+
+    public static final int COUNT = 71;
+
+    private static final String[] NAMES = {
+        null,
+        "Objects",
+        "Connections",
+        "Takes",
+        "Model",
+        "Geometry",
+        "Material",
+        "Texture",
+        "Video",
+        "Deformer",
+        "AnimationStack",
+        "AnimationLayer",
+        "AnimationCurveNode",
+        "AnimationCurve",
+        "LimbNode",
+        "Shape",
+        "Mesh",
+        "Skin",
+        "Cluster",
+        "C",
+        "Connect",
+        "OO",
+        "OP",
+        "Properties60",
+        "Properties70",
+        "P",
+        "Property",
+        "KeyTime",
+        "KeyValueFloat",
+        "KeyAttrFlags",
+        "KeyAttrDataFloat",
+        "KeyAttrRefCount",
+        "Indexes",
+        "Weights",
+        "Transform",
+        "TransformLink",
+        "Content",
+        "Vertices",
+        "PolygonVertexIndex",
+        "LayerElementNormal",
+        "Normals",
+        "LayerElementUV",
+        "UV",
+        "UVIndex",
+        "Link_DeformAcuracy",
+        "Type",
+        "TextureName",
+        "FileName",
+        "RelativeFilename",
+        "Lcl Translation",
+        "Lcl Rotation",
+        "Lcl Scaling",
+        "d|X",
+        "d|Y",
+        "d|Z",
+        "Color",
+        "ColorRGB",
+        "Ambient",
+        "AmbientColor",
+        "Specular",
+        "SpecularColor",
+        "Diffuse",
+        "DiffuseColor",
+        "Emissive",
+        "EmissiveColor",
+        "TransparencyFactor",
+        "SpecularFactor",
+        "ReflectionFactor",
+        "Shininess",
+        "Opacity",
+        "Reflectivity"
+    };
+
+    // Open addressing table of IDs, keyed on a hash of the name bytes. Kept at most half full so probes stay short
+    private static final int TABLE_SIZE = 256;
+    private static final byte[][] tableKeys = new byte[TABLE_SIZE][];
+    private static final int[] tableIDs = new int[TABLE_SIZE];
+
+    static {
+        for (int id = 1; id < COUNT; id++) {
+            byte[] key = NAMES[id].getBytes();
+
+            int slot = hash(key) & (TABLE_SIZE - 1);
+            while (tableKeys[slot] != null) {
+                slot = (slot + 1) & (TABLE_SIZE - 1);
+            }
+
+            tableKeys[slot] = key;
+            tableIDs[slot] = id;
+        }
+    }
+
+    private static int hash(byte[] key) {
+        int result = 0;
+        for (byte b : key) {
+            result = 31 * result + b;
+        }
+        return mix(result);
+    }
+
+    private static int hash(FBXBuffer data, long position, int length) {
+        int result = 0;
+        for (int i = 0; i < length; i++) {
+            result = 31 * result + data.get(position + i);
+        }
+        return mix(result);
+    }
+
+    /* Spread the bits so short names don't all land in the same few slots */
+    private static int mix(int h) {
+        return h ^ (h >>> 7) ^ (h >>> 15);
+    }
+
+    /** Look up the ID of the name stored in the supplied range of data, without copying it out
+     * @return The ID of the name, or UNKNOWN */
+    public static int lookup(FBXBuffer data, long position, int length) {
+        int slot = hash(data, position, length) & (TABLE_SIZE - 1);
+
+        while (tableKeys[slot] != null) {
+            if (matches(tableKeys[slot], data, position, length)) {
+                return tableIDs[slot];
+            }
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+
+        return UNKNOWN;
+    }
+
+    private static boolean matches(byte[] key, FBXBuffer data, long position, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != data.get(position + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** The name with the supplied ID, or null if the ID is UNKNOWN */
+    public static String getName(int id) {
+        return NAMES[id];
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.fbx;
+
+import com.jumi.fbx.objects.FBXProperty;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * FBXReader
+ * 
+ * Walks the node tree of a binary FBX file and reports each node to an FBXVisitor. Nesting is taken from each
+ * node's end offset, so a visitor can skip any subtree without it being read. Nothing is built beyond the
+ * properties of the node currently being visited, so exactly what's needed can be pulled out of a large file
+ * (all the geometry of one mesh, say) in constant memory.
+ * 
+ * @author Richard Greenlees
+ */
+public class FBXReader {
+
+    // The first byte after the file header
+    private static final int FIRST_NODE_OFFSET = 27;
+
+    private final FBXBuffer data;
+
+    public FBXReader(FBXBuffer inputData) {
+        data = inputData;
+    }
+
+    /** Map the supplied file ready to be read. ASCII files are converted to binary first */
+    public static FBXReader open(String fileName) throws IOException {
+        FBXBuffer fileData = FBXBuffer.map(fileName);
+
+        if (!FBXAsciiTranscoder.isBinary(fileData)) {
+            return new FBXReader(FBXAsciiTranscoder.transcode(fileData));
+        }
+
+        if (fileData.size() < FIRST_NODE_OFFSET) {
+            throw new EOFException("File is too short to be a binary FBX: " + fileName);
+        }
+
+        // Bytes 23 - 26 hold the version number, which decides the record layout
+        fileData.setVersion(fileData.getInt(23));
+
+        return new FBXReader(fileData);
+    }
+
+    /** The data being read */
+    public FBXBuffer getData() {
+        return data;
+    }
+
+    /** Visit every node in the file */
+    public void accept(FBXVisitor visitor) {
+        readChildren(visitor, FIRST_NODE_OFFSET, data.size());
+    }
+
+    /** Visit every node in a list of siblings, stopping at the null record that closes the list or at endPosition
+     * @param visitor The visitor to receive events
+     * @param startPosition Offset of the first node in the list
+     * @param endPosition Offset the list can't extend past, usually the end offset of its parent */
+    public void readChildren(FBXVisitor visitor, long startPosition, long endPosition) {
+        int headerSize = data.recordHeaderSize();
+        long position = startPosition;
+
+        while (endPosition - position >= headerSize) {
+            long recordEnd = data.getRecordEnd(position);
+
+            // A null record closes the list
+            if (recordEnd == 0) {
+                break;
+            }
+
+            if (recordEnd <= position || recordEnd > endPosition) {
+                System.err.println("WARNING: Node at offset " + position + " ends outside of its parent, skipping the rest of the list");
+                break;
+            }
+
+            position = readNode(visitor, position);
+        }
+    }
+
+    /** Visit a single node and, if the visitor asks for them, its children
+     * @param visitor The visitor to receive events
+     * @param position Offset of the node
+     * @return The offset just past the end of the node */
+    public long readNode(FBXVisitor visitor, long position) {
+        long recordEnd = data.getRecordEnd(position);
+        int nameID = data.getRecordNameID(position);
+        String name = (nameID != FBXNames.UNKNOWN) ? FBXNames.getName(nameID) : data.getRecordName(position);
+
+        // Whatever follows the properties is the node's children
+        if (visitor.beginNode(nameID, name, readProperties(position))) {
+            readChildren(visitor, data.getRecordChildrenOffset(position), recordEnd);
+        }
+        visitor.endNode();
+
+        return recordEnd;
+    }
+
+    /** The properties of the node at position, without visiting it */
+    public FBXProperty[] readProperties(long position) {
+        FBXProperty[] properties = new FBXProperty[(int) data.getRecordPropertyCount(position)];
+        long cursor = position + data.recordHeaderSize() + data.getRecordNameLength(position);
+
+        for (int i = 0; i < properties.length; i++) {
+            properties[i] = new FBXProperty(data, cursor);
+            cursor += properties[i].dataLength;
+        }
+
+        return properties;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.fbx;
+
+import com.jumi.fbx.objects.FBXProperty;
+
+/**
+ * FBXVisitor
+ * 
+ * Receives events from an FBXReader as it walks the node tree of a binary FBX file. Every call to beginNode is
+ * matched by a call to endNode once the node and any children it has have been visited.
+ * 
+ * @author Richard Greenlees
+ */
+public interface FBXVisitor {
+
+    /** Called when a node is reached. The properties are decoded lazily, so only those actually read cost anything
+     * @param nameID The FBXNames ID of the node's name, or FBXNames.UNKNOWN
+     * @param name The name of the node. Known names share a single String, so this only allocates for unknown ones
+     * @param properties The node's properties
+     * @return True to visit the node's children, false to skip over them */
+    public boolean beginNode(int nameID, String name, FBXProperty[] properties);
+
+    /** Called once a node and its children (if visited) are finished with */
+    public void endNode();
+}
@@ -18,79 +18,150 @@
  */
 package com.jumi.fbx.node;
 
+import com.jumi.fbx.FBXBuffer;
+import com.jumi.fbx.FBXNames;
 import com.jumi.fbx.objects.FBXConnection;
-import com.jumi.fbx.objects.FBXProperty;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 
 /**
  * FBXConnectionsNode
  * 
- * Parses the FBX Connections node data to produce a set of object connections
+ * Parses the FBX Connections node data to produce a set of object connections. Connections are decoded straight
+ * from the file into parallel arrays, one entry per connection, without building any property objects. Older
+ * files which connect objects by name rather than UID have each name interned once, and store its index instead.
  * 
  * @author RGreenlees
  */
 public class FBXConnectionsNode extends FBXNode {
 
-    public ArrayList<FBXConnection> connections = new ArrayList();
+    public static final byte OBJECT_OBJECT = 0;
+    public static final byte OBJECT_PROPERTY = 1;
+    // Set in the type when left and right are indices into the names list rather than UIDs
+    public static final byte NAMED = 0x10;
 
-    public FBXConnectionsNode(byte[] inputData, int propertyOffset) {
-        super(inputData, propertyOffset);
+    private static final int INITIAL_CAPACITY = 256;
+
+    public long[] left = new long[INITIAL_CAPACITY];
+    public long[] right = new long[INITIAL_CAPACITY];
+    public byte[] type = new byte[INITIAL_CAPACITY];
+    public int count = 0;
+
+    public ArrayList<String> names = new ArrayList();
+    private final HashMap<String, Integer> nameIndices = new HashMap();
+
+    public FBXConnectionsNode(FBXBuffer inputData, long nodeStartOffset, long nodeEndOffset) {
+        super(inputData, nodeStartOffset, nodeEndOffset);
     }
 
     /** Method to parse the binary data for the Connections node
      * @param inputData The binary data being parsed
      * @param propertyOffset Where to start parsing from */
     @Override
-    public void parseData(byte[] inputData, int propertyOffset) {
-
-        // Allow for 13 null bytes at the end of the node (standard in FBX files)
-        while (sizeInBytes - cursorPosition > 13) {
-            
-            // Determine the name of the nested node. It should never be anything except "C" or "Connect" but you never know
-            int nestedNameLength = inputData[cursorPosition + 12];
-            byte[] nestedNameData = FBXNode.retrieveBytesFrom(inputData, nestedNameLength, cursorPosition + 13);
-            String nestedName = new String(nestedNameData);
-            
-
-            // Find out how many properties we have. Should always be 3 but again, you never know
-            int nestedProperties = getNumProperties(inputData, cursorPosition);  
-            
-
-            FBXProperty[] connectionProperties = new FBXProperty[nestedProperties];
-            cursorPosition += nestedNameLength + 13;
-            
-            /* Parse all of the properties of this nested item. The first property indicates if it's
-               connecting two objects ("OO") or an object to a property ("OP"). The next two properties
-               are the UIDs of the two objects or object and property to hook up */
-            for (int i = 0; i < nestedProperties; i++) {
-                FBXProperty newProp = new FBXProperty(inputData, cursorPosition);
-                cursorPosition += newProp.dataLength;
-                connectionProperties[i] = newProp;
-            }
+    public void parseData(FBXBuffer inputData, long propertyOffset) {
 
-            // Determine the two objects to connect and create a connection object for them to be handled later
-            if (nestedName.equals("C") || nestedName.equals("Connect")) {
-                switch (connectionProperties[0].asString()) {
-                    case "OO":
-                        if (connectionProperties[1].dataType.equals("Long")) {
-                            connections.add(new FBXConnection(FBXConnection.FBXConnectionType.OBJECT_OBJECT, connectionProperties[1].asLong(), connectionProperties[2].asLong()));
-                        } else {
-                            String leftID = connectionProperties[1].asString().substring(0, connectionProperties[1].asString().indexOf('\0'));
-                            String rightID = connectionProperties[2].asString().substring(0, connectionProperties[2].asString().indexOf('\0'));
-                            connections.add(new FBXConnection(FBXConnection.FBXConnectionType.OBJECT_OBJECT, leftID, rightID));
-                        }   break;
-                    case "OP":
-                        if (connectionProperties[1].dataType.equals("Long")) {
-                            connections.add(new FBXConnection(FBXConnection.FBXConnectionType.OBJECT_PROPERTY, connectionProperties[1].asLong(), connectionProperties[2].asLong()));
-                        } else {
-                            String leftID = connectionProperties[1].asString().substring(0, connectionProperties[1].asString().indexOf('\0'));
-                            String rightID = connectionProperties[2].asString().substring(0, connectionProperties[2].asString().indexOf('\0'));
-                            connections.add(new FBXConnection(FBXConnection.FBXConnectionType.OBJECT_PROPERTY, leftID, rightID));
-                    }   break;
-                }
+        int headerSize = inputData.recordHeaderSize();
+
+        // Allow for the null record at the end of the node (standard in FBX files)
+        while (endOffset - cursorPosition > headerSize) {
+            long recordEnd = inputData.getRecordEnd(cursorPosition);
+
+            // Determine the name of the nested node. It should never be anything except "C" or "Connect" but you never know.
+            // The properties should always be the connection type and the two objects but again, you never know
+            int nestedID = inputData.getRecordNameID(cursorPosition);
+            if ((nestedID == FBXNames.C || nestedID == FBXNames.CONNECT) && inputData.getRecordPropertyCount(cursorPosition) >= 3) {
+                readConnection(inputData, cursorPosition + headerSize + inputData.getRecordNameLength(cursorPosition));
             }
+
+            cursorPosition = recordEnd;
+        }
+    }
+
+    /* The first property indicates if it's connecting two objects ("OO") or an object to a property ("OP"). The next two
+       properties are the UIDs (or names) of the two objects or object and property to hook up */
+    private void readConnection(FBXBuffer inputData, long position) {
+        if (inputData.get(position) != 'S') {
+            return;
+        }
+
+        int typeLength = inputData.getInt(position + 1);
+        byte connectionType;
+        switch (FBXNames.lookup(inputData, position + 5, typeLength)) {
+            case FBXNames.OO:
+                connectionType = OBJECT_OBJECT; break;
+            case FBXNames.OP:
+                connectionType = OBJECT_PROPERTY; break;
+            default:
+                return;
+        }
+        position += 5 + typeLength;
+
+        if (inputData.get(position) == 'L') {
+            add(connectionType, inputData.getLong(position + 1), inputData.getLong(position + 10));
+        } else if (inputData.get(position) == 'S') {
+            int leftLength = inputData.getInt(position + 1);
+            long leftName = internName(inputData, position + 5, leftLength);
+            position += 5 + leftLength;
+
+            long rightName = internName(inputData, position + 5, inputData.getInt(position + 1));
+            add((byte) (connectionType | NAMED), leftName, rightName);
+        }
+    }
+
+    private void add(byte connectionType, long leftID, long rightID) {
+        if (count == left.length) {
+            left = Arrays.copyOf(left, count * 2);
+            right = Arrays.copyOf(right, count * 2);
+            type = Arrays.copyOf(type, count * 2);
+        }
+
+        left[count] = leftID;
+        right[count] = rightID;
+        type[count] = connectionType;
+        count++;
+    }
+
+    /* Names are stored up to the first null, the rest is the object's class */
+    private long internName(FBXBuffer inputData, long position, int length) {
+        int nameLength = 0;
+        while (nameLength < length && inputData.get(position + nameLength) != 0) {
+            nameLength++;
+        }
+
+        String name = new String(inputData.getBytes(position, nameLength));
+        Integer index = nameIndices.get(name);
+        if (index == null) {
+            index = names.size();
+            names.add(name);
+            nameIndices.put(name, index);
         }
+        return index;
     }
 
+    /** Does connection i refer to objects by name rather than UID? */
+    public boolean isNamed(int i) {
+        return (type[i] & NAMED) != 0;
+    }
+
+    /** Name of the left object of connection i, for connections which use names */
+    public String getLeftName(int i) {
+        return names.get((int) left[i]);
+    }
+
+    /** Name of the right object of connection i, for connections which use names */
+    public String getRightName(int i) {
+        return names.get((int) right[i]);
+    }
+
+    /** Build a standalone FBXConnection for connection i */
+    public FBXConnection getConnection(int i) {
+        FBXConnection.FBXConnectionType connectionType = ((type[i] & ~NAMED) == OBJECT_PROPERTY)
+                ? FBXConnection.FBXConnectionType.OBJECT_PROPERTY : FBXConnection.FBXConnectionType.OBJECT_OBJECT;
 
+        if (isNamed(i)) {
+            return new FBXConnection(connectionType, getLeftName(i), getRightName(i));
+        }
+        return new FBXConnection(connectionType, left[i], right[i]);
+    }
 }
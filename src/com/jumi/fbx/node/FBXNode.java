@@ -19,37 +19,41 @@
 package com.jumi.fbx.node;
 
 
+import com.jumi.fbx.FBXBuffer;
 import com.jumi.fbx.objects.FBXProperty;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
 
 /**
  * FBXNode
  * 
- * Base class for Object and Connection nodes
+ * Base class for Object and Connection nodes. A node is parsed as a window (start and end offset) over the
+ * file data, so the node's bytes are never copied out of the file. Offsets and counts are kept as 64-bit values
+ * so that FBX 7500+ files, whose record headers are 64-bit, can be addressed beyond 4GB.
  * 
  * @author Richard Greenlees
  */
 public abstract class FBXNode {
 
-    public int endOffset;
-    public int numProperties;
-    public int propertyListLength;
-    public int cursorPosition;
+    public long startOffset;
+    public long endOffset;
+    public long numProperties;
+    public long propertyListLength;
+    public long cursorPosition;
     public int nameLength;
     public String name;
-    public int sizeInBytes;
     
     public ArrayList<FBXProperty> properties = new ArrayList();
     
     // Constructor. Sets up some useful info about the node
-    public FBXNode(byte[] inputData, int propertyOffset) {
-        sizeInBytes = inputData.length;
+    public FBXNode(FBXBuffer inputData, long nodeStartOffset, long nodeEndOffset) {
+        startOffset = nodeStartOffset;
+        endOffset = nodeEndOffset;
 
-        numProperties = getNumProperties(inputData);
+        numProperties = getNumProperties(inputData, startOffset);
+        propertyListLength = getPropertyListLength(inputData, startOffset);
+        name = getName(inputData, startOffset);
 
-        int propertyStartOffset = propertyOffset;
+        long propertyStartOffset = startOffset + inputData.recordHeaderSize() + nameLength;
 
         for (int i = 0; i < numProperties; i++) {
             FBXProperty newProp = new FBXProperty(inputData, propertyStartOffset);
@@ -60,55 +64,26 @@ public abstract class FBXNode {
         cursorPosition = propertyStartOffset;
     }
    
-    public abstract void parseData(byte[] inputData, int propertyOffset);
-
-    // Helper method to extract the data specific to this node
-    public final byte[] extractRawData(byte[] inputData, int startPosition, int endOffset) {
-        byte[] rawData = new byte[endOffset - startPosition];
-
-        for (int i = 0; i < rawData.length; i++) {
-            rawData[i] = inputData[startPosition + i];
-        }
-
-        return rawData;
-    }
-
-    public final int getNumProperties(byte[] inputData) {
-        byte[] bytes = retrieveBytesFrom(inputData, 4, 4);
-        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
-    }
+    public abstract void parseData(FBXBuffer inputData, long propertyOffset);
     
-    public final int getNumProperties(byte[] inputData, int startPosition) {
-        byte[] bytes = retrieveBytesFrom(inputData, 4, 4+startPosition);
-        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
-    }
-
-    public final String getName(byte[] inputData) {
-        nameLength = getNameLength(inputData);
-        return new String(retrieveBytesFrom(inputData, nameLength, 13));
+    public final long getNumProperties(FBXBuffer inputData, long startPosition) {
+        return inputData.getRecordPropertyCount(startPosition);
     }
 
-    public final int getNameLength(byte[] inputData) {
-        return inputData[12];
+    public final String getName(FBXBuffer inputData, long startPosition) {
+        nameLength = getNameLength(inputData, startPosition);
+        return inputData.getRecordName(startPosition);
     }
 
-    public final int getPropertyListLength(byte[] inputData) {
-        byte[] bytes = retrieveBytesFrom(inputData, 4, 8);
-        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    public final int getNameLength(FBXBuffer inputData, long startPosition) {
+        return inputData.getRecordNameLength(startPosition);
     }
 
-    public final int getEndOffset(byte[] inputData, int startPosition) {
-        byte[] result = retrieveBytesFrom(inputData, 4, startPosition);
-        return ByteBuffer.wrap(result).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    public final long getPropertyListLength(FBXBuffer inputData, long startPosition) {
+        return inputData.getRecordPropertyListLength(startPosition);
     }
 
-    public final static byte[] retrieveBytesFrom(byte[] inputData, int numBytes, int offSet) {
-        byte[] result = new byte[numBytes];
-
-        for (int i = offSet; i < numBytes + offSet; i++) {
-            result[i - offSet] = inputData[i];
-        }
-
-        return result;
+    public final long getEndOffset(FBXBuffer inputData, long startPosition) {
+        return inputData.getRecordEnd(startPosition);
     }
 }
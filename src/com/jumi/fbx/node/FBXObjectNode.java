@@ -18,6 +18,12 @@
  */
 package com.jumi.fbx.node;
 
+import com.jumi.JUMIImportOptions;
+import com.jumi.fbx.FBXArrayInflater;
+import com.jumi.fbx.FBXBuffer;
+import com.jumi.fbx.FBXNames;
+import com.jumi.fbx.FBXReader;
+import com.jumi.fbx.FBXVisitor;
 import com.jumi.fbx.objects.definitions.FBXAnimCurveDefinition;
 import com.jumi.fbx.objects.definitions.FBXAnimCurveNodeDefinition;
 import com.jumi.fbx.objects.definitions.FBXAnimLayerDefinition;
@@ -29,15 +35,17 @@ import com.jumi.fbx.objects.definitions.FBXMaterialDefinition;
 import com.jumi.fbx.objects.definitions.FBXMediaDefinition;
 import com.jumi.fbx.objects.definitions.FBXModelDefinition;
 import com.jumi.fbx.objects.definitions.FBXObjectDefinition;
+import com.jumi.fbx.objects.FBXObjectTable;
 import com.jumi.fbx.objects.FBXProperty;
 import com.jumi.fbx.objects.definitions.FBXShapeDefinition;
 import com.jumi.fbx.objects.definitions.FBXSkinDeformerDefinition;
 import com.jumi.fbx.objects.definitions.FBXTextureDefinition;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map.Entry;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * FBXObjectNode
@@ -48,136 +56,353 @@ import java.util.Map.Entry;
  */
 public class FBXObjectNode extends FBXNode {
 
-    public HashMap<String, FBXObjectDefinition> connectableObjects = new HashMap();
+    public FBXObjectTable connectableObjects = new FBXObjectTable();
 
-    public FBXObjectNode(byte[] inputData, int propertyOffset) {
-        super(inputData, propertyOffset);
+    // Objects of the kinds the loader asks about, each in file order. Filled as the definitions are created
+    public ArrayList<FBXModelDefinition> models = new ArrayList();
+    public ArrayList<FBXModelDefinition> geometries = new ArrayList();
+    public ArrayList<FBXTextureDefinition> textures = new ArrayList();
+    public ArrayList<FBXMaterialDefinition> materials = new ArrayList();
+    public ArrayList<FBXMediaDefinition> media = new ArrayList();
+    public ArrayList<FBXLimbNodeDefinition> limbNodes = new ArrayList();
+    public ArrayList<FBXClusterDefinition> clusters = new ArrayList();
+    public ArrayList<FBXAnimCurveDefinition> animCurves = new ArrayList();
+
+    private final JUMIImportOptions options;
+    // Nested nodes the import options don't want, indexed by FBXNames ID. These are skipped whatever the definition consumes
+    private final boolean[] skippedNodes = new boolean[FBXNames.COUNT];
+
+    public FBXObjectNode(FBXBuffer inputData, long nodeStartOffset, long nodeEndOffset) {
+        this(inputData, nodeStartOffset, nodeEndOffset, new JUMIImportOptions());
     }
 
-    @Override
-    public void parseData(byte[] inputData, int propertyOffset) {
+    public FBXObjectNode(FBXBuffer inputData, long nodeStartOffset, long nodeEndOffset, JUMIImportOptions importOptions) {
+        super(inputData, nodeStartOffset, nodeEndOffset);
+        options = importOptions;
 
-        long objectUID;
-        FBXObjectDefinition newObject;
+        if (!options.importNormals()) {
+            skippedNodes[FBXNames.LAYER_ELEMENT_NORMAL] = true;
+            skippedNodes[FBXNames.NORMALS] = true;
+        }
+        if (!options.importUVs()) {
+            skippedNodes[FBXNames.LAYER_ELEMENT_UV] = true;
+            skippedNodes[FBXNames.UV] = true;
+            skippedNodes[FBXNames.UV_INDEX] = true;
+        }
+        if (!options.importEmbeddedTextures()) {
+            skippedNodes[FBXNames.CONTENT] = true;
+        }
+    }
 
-        while (sizeInBytes - cursorPosition > 13) {
+    @Override
+    public void parseData(FBXBuffer inputData, long propertyOffset) {
+        FBXReader reader = new FBXReader(inputData);
+        ArrayList<ObjectSpan> spans = new ArrayList();
 
-            objectUID = 0;
-            newObject = null;
+        // First a cheap pass over the children of the Objects node, creating a definition for each object we want and
+        // noting where the nodes nested inside it are. Definitions are registered here, so the order is always file order
+        int headerSize = inputData.recordHeaderSize();
+        long position = cursorPosition;
 
-            int nestedNameLength = inputData[cursorPosition + 12];
+        while (endOffset - position > headerSize) {
+            long objectEnd = inputData.getRecordEnd(position);
 
-            byte[] nestedNameData = FBXNode.retrieveBytesFrom(inputData, nestedNameLength, cursorPosition + 13);
-            String nestedName = new String(nestedNameData);
+            if (objectEnd <= position || objectEnd > endOffset) {
+                System.err.println("WARNING: Object at offset " + position + " ends outside of the Objects node, skipping the rest");
+                break;
+            }
 
-            byte[] numPropertiesData = FBXNode.retrieveBytesFrom(inputData, 4, cursorPosition + 4);
-            int numNestedProperties = ByteBuffer.wrap(numPropertiesData).order(ByteOrder.LITTLE_ENDIAN).getInt();
+            FBXObjectDefinition newObject = createDefinition(inputData.getRecordNameID(position), reader.readProperties(position));
+            if (newObject != null) {
+                spans.add(new ObjectSpan(newObject, inputData.getRecordChildrenOffset(position), objectEnd));
+            }
 
-            FBXProperty[] nestedProperties = new FBXProperty[numNestedProperties];
+            position = objectEnd;
+        }
 
-            cursorPosition += nestedNameLength + 13;
+        // Queue the compressed arrays each object will read, so they inflate while we parse
+        FBXArrayInflater arrayInflater = inputData.getArrayInflater();
+        if (arrayInflater != null) {
+            for (ObjectSpan span : spans) {
+                arrayInflater.scan(span.definition, skippedNodes, span.startOffset, span.endOffset);
+            }
+        }
 
-            for (int i = 0; i < nestedProperties.length; i++) {
-                FBXProperty newProp = new FBXProperty(inputData, cursorPosition);
-                cursorPosition += newProp.dataLength;
-                nestedProperties[i] = newProp;
+        // Then parse what's nested in each object. Definitions only touch their own state while parsing, so they can run side by side
+        if (options.parallelParsing && spans.size() > 1) {
+            ForkJoinPool pool = new ForkJoinPool();
+            try {
+                pool.invoke(new ParseTask(reader, spans, 0, spans.size()));
+            } finally {
+                pool.shutdown();
             }
+        } else {
+            for (ObjectSpan span : spans) {
+                span.parse(reader);
+            }
+        }
 
-            if (nestedProperties.length > 0 && nestedProperties[0].dataType.equals("Long")) {
-                objectUID = nestedProperties[0].asLong();
+        // Whether a model holds geometry is only known once its nested nodes are parsed. Older files keep it in the Model node itself
+        for (FBXModelDefinition model : models) {
+            if (model.hasGeometry()) {
+                geometries.add(model);
             }
+        }
 
-            // What kind of nested item is this?
-            switch (nestedName) {
-                case "Model":
-                case "Geometry":
-                    String modelType = nestedProperties[nestedProperties.length - 1].asString();
-                    
-                    switch (modelType) {
-                        // Bone definition. Name and local translation
-                        case "LimbNode":
-                            newObject = new FBXLimbNodeDefinition(objectUID);
-                            break;
-                        // Morph target
-                        case "Shape":
-                            newObject = new FBXShapeDefinition(objectUID);
-                            break;
-                        // Mesh geometry or model attributes (local translation etc...)
-                        case "Mesh":
-                            newObject = new FBXModelDefinition(objectUID);
-                            break;
-                        // TODO: Look at adding support for cameras
-                        default: break;
-                    }
-                    break;
-                // Material definition. Doesn't contain texture info
-                case "Material":
-                    newObject = new FBXMaterialDefinition(objectUID);
-                    break;
-                // A texture definition, filename, format etc.
-                case "Texture":
-                    newObject = new FBXTextureDefinition(objectUID);
-                    break;
-                // Seems to do the same job as a texture object, not sure why it's needed but it's used so keep it
-                case "Video":
-                    newObject = new FBXMediaDefinition(objectUID);
-                    break;
-                // Bone definition. Affected vertices and weights
-                case "Deformer":
-                    String deformerType = nestedProperties[nestedProperties.length - 1].asString();
-                    if (deformerType.equals("Skin")) {
-                        newObject = new FBXSkinDeformerDefinition(objectUID);
-                    } else if (deformerType.equals("Cluster")) {
-                        newObject = new FBXClusterDefinition(objectUID);
-                    }   break;
-                // A container for animations, allowing for blending
-                case "AnimationStack":
-                    newObject = new FBXAnimStackDefinition(objectUID);
-                    break;
-                // A single animation
-                case "AnimationLayer":
-                    newObject = new FBXAnimLayerDefinition(objectUID);
-                    break;
-                // Contains the actual animation data
-                case "AnimationCurveNode":
-                    newObject = new FBXAnimCurveNodeDefinition(objectUID);
-                    break;
-                // Data for a single keyframe
-                case "AnimationCurve":
-                    newObject = new FBXAnimCurveDefinition(objectUID);
-                    break;
+        // Geometry is decoded when its mesh is built, but everything else has read its arrays by now, so anything it
+        // left behind won't be read
+        if (arrayInflater != null) {
+            for (ObjectSpan span : spans) {
+                if (!(span.definition instanceof FBXModelDefinition) || !((FBXModelDefinition) span.definition).hasGeometry()) {
+                    arrayInflater.discard(span.startOffset, span.endOffset);
+                }
             }
+        }
 
-            // If our new object is one of the above then add it to our connectable objects ready to hook up
-            if (newObject != null) {
-                
-                String newObjectName = nestedProperties[nestedProperties.length - 2].asString();
-                newObjectName = newObjectName.substring(0, newObjectName.indexOf('\0'));
+        cursorPosition = endOffset;
+    }
+
+    /* Create the definition for a child of the Objects node, or null if it isn't something we handle */
+    private FBXObjectDefinition createDefinition(int nestedID, FBXProperty[] nestedProperties) {
+        long objectUID = 0;
+        FBXObjectDefinition newObject = null;
+
+        if (nestedProperties.length > 0 && nestedProperties[0].typeCode == 'L') {
+            objectUID = nestedProperties[0].asLong();
+        }
+
+        // What kind of nested item is this?
+        switch (nestedID) {
+            case FBXNames.MODEL:
+            case FBXNames.GEOMETRY:
+                int modelType = nestedProperties[nestedProperties.length - 1].asNameID();
                 
-                newObject.setName(newObjectName);
-                newObject.parseData(inputData, cursorPosition);
-                // Some older FBX files use String names as IDs instead of longs. Performance isn't affected too badly so let's allow it
-                connectableObjects.put((objectUID > 0) ? String.valueOf(objectUID) : newObjectName, newObject);
-                cursorPosition = newObject.endOffset;
+                switch (modelType) {
+                    // Bone definition. Name and local translation
+                    case FBXNames.LIMB_NODE:
+                        newObject = new FBXLimbNodeDefinition(objectUID);
+                        break;
+                    // Morph target
+                    case FBXNames.SHAPE:
+                        newObject = new FBXShapeDefinition(objectUID);
+                        break;
+                    // Mesh geometry or model attributes (local translation etc...)
+                    case FBXNames.MESH:
+                        newObject = new FBXModelDefinition(objectUID);
+                        break;
+                    // TODO: Look at adding support for cameras
+                    default: break;
+                }
+                break;
+            // Material definition. Doesn't contain texture info
+            case FBXNames.MATERIAL:
+                newObject = new FBXMaterialDefinition(objectUID);
+                break;
+            // A texture definition, filename, format etc.
+            case FBXNames.TEXTURE:
+                newObject = new FBXTextureDefinition(objectUID);
+                break;
+            // Seems to do the same job as a texture object, not sure why it's needed but it's used so keep it
+            case FBXNames.VIDEO:
+                newObject = new FBXMediaDefinition(objectUID);
+                break;
+            // Bone definition. Affected vertices and weights
+            case FBXNames.DEFORMER:
+                int deformerType = nestedProperties[nestedProperties.length - 1].asNameID();
+                if (deformerType == FBXNames.SKIN) {
+                    newObject = new FBXSkinDeformerDefinition(objectUID);
+                } else if (deformerType == FBXNames.CLUSTER) {
+                    newObject = new FBXClusterDefinition(objectUID);
+                }   break;
+            // A container for animations, allowing for blending
+            case FBXNames.ANIMATION_STACK:
+                newObject = new FBXAnimStackDefinition(objectUID);
+                break;
+            // A single animation
+            case FBXNames.ANIMATION_LAYER:
+                newObject = new FBXAnimLayerDefinition(objectUID);
+                break;
+            // Contains the actual animation data
+            case FBXNames.ANIMATION_CURVE_NODE:
+                newObject = new FBXAnimCurveNodeDefinition(objectUID);
+                break;
+            // Data for a single keyframe
+            case FBXNames.ANIMATION_CURVE:
+                newObject = new FBXAnimCurveDefinition(objectUID);
+                break;
+        }
+
+        // Drop anything the import options don't want before it parses any of its nested nodes
+        if (newObject != null && !isWanted(newObject)) {
+            newObject = null;
+        }
+
+        // If our new object is one of the above then add it to our connectable objects ready to hook up
+        if (newObject != null) {
+            
+            String newObjectName = nestedProperties[nestedProperties.length - 2].asString();
+            newObjectName = newObjectName.substring(0, newObjectName.indexOf('\0'));
+            
+            newObject.setName(newObjectName);
+            // Some older FBX files use String names as IDs instead of longs. Those are kept apart so they don't slow down UID lookups
+            if (objectUID != 0) {
+                connectableObjects.put(objectUID, newObject);
+            } else {
+                connectableObjects.put(newObjectName, newObject);
             }
+            addToIndex(newObject);
+        }
 
+        return newObject;
+    }
+
+    /* Meshes are always wanted. Skeletons and skin clusters go if skinning is skipped, and everything else if only geometry is wanted */
+    private boolean isWanted(FBXObjectDefinition newObject) {
+        switch (newObject.typeID) {
+            case FBXObjectDefinition.TYPE_MODEL:
+                return true;
+            case FBXObjectDefinition.TYPE_LIMB_NODE:
+            case FBXObjectDefinition.TYPE_SKIN_DEFORMER:
+            case FBXObjectDefinition.TYPE_CLUSTER:
+                return options.importSkinning();
+            case FBXObjectDefinition.TYPE_MATERIAL:
+            case FBXObjectDefinition.TYPE_TEXTURE:
+            case FBXObjectDefinition.TYPE_MEDIA:
+                return options.importMaterials();
+            default:
+                return !options.geometryOnly;
         }
     }
 
-    /** Returns a specific connectable object using the supplied key */
+    /* Add a new object to the list for its type, if it has one */
+    private void addToIndex(FBXObjectDefinition newObject) {
+        switch (newObject.typeID) {
+            case FBXObjectDefinition.TYPE_MODEL:
+                models.add((FBXModelDefinition) newObject);
+                break;
+            case FBXObjectDefinition.TYPE_TEXTURE:
+                textures.add((FBXTextureDefinition) newObject);
+                break;
+            case FBXObjectDefinition.TYPE_MATERIAL:
+                materials.add((FBXMaterialDefinition) newObject);
+                break;
+            case FBXObjectDefinition.TYPE_MEDIA:
+                media.add((FBXMediaDefinition) newObject);
+                break;
+            case FBXObjectDefinition.TYPE_LIMB_NODE:
+                limbNodes.add((FBXLimbNodeDefinition) newObject);
+                break;
+            case FBXObjectDefinition.TYPE_CLUSTER:
+                clusters.add((FBXClusterDefinition) newObject);
+                break;
+            case FBXObjectDefinition.TYPE_ANIM_CURVE:
+                animCurves.add((FBXAnimCurveDefinition) newObject);
+                break;
+            default: break;
+        }
+    }
+
+    /* A definition and the range of the file holding its nested nodes */
+    private class ObjectSpan {
+
+        private final FBXObjectDefinition definition;
+        private final long startOffset;
+        private final long endOffset;
+
+        ObjectSpan(FBXObjectDefinition inDefinition, long inStartOffset, long inEndOffset) {
+            definition = inDefinition;
+            startOffset = inStartOffset;
+            endOffset = inEndOffset;
+        }
+
+        void parse(FBXReader reader) {
+            reader.readChildren(new DefinitionVisitor(definition), startOffset, endOffset);
+            definition.startOffset = startOffset;
+            definition.endOffset = endOffset;
+        }
+    }
+
+    /* Parses a range of object spans, splitting the range across the pool until it's small enough to do in one go */
+    private static class ParseTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int MAX_OBJECTS_PER_TASK = 8;
+
+        private final FBXReader reader;
+        private final ArrayList<ObjectSpan> spans;
+        private final int start;
+        private final int end;
+
+        ParseTask(FBXReader inReader, ArrayList<ObjectSpan> inSpans, int inStart, int inEnd) {
+            reader = inReader;
+            spans = inSpans;
+            start = inStart;
+            end = inEnd;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= MAX_OBJECTS_PER_TASK) {
+                for (int i = start; i < end; i++) {
+                    spans.get(i).parse(reader);
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new ParseTask(reader, spans, start, middle), new ParseTask(reader, spans, middle, end));
+            }
+        }
+    }
+
+    /* Passes every node nested inside an object on to its definition, except those the import options don't want */
+    private class DefinitionVisitor implements FBXVisitor {
+
+        private final FBXObjectDefinition definition;
+
+        DefinitionVisitor(FBXObjectDefinition inDefinition) {
+            definition = inDefinition;
+        }
+
+        @Override
+        public boolean beginNode(int nodeID, String nodeName, FBXProperty[] nodeProperties) {
+            if (skippedNodes[nodeID]) {
+                return false;
+            }
+            return definition.beginNode(nodeID, nodeName, nodeProperties);
+        }
+
+        @Override
+        public void endNode() {
+            definition.endNode();
+        }
+    }
+
+    /** Returns a specific connectable object using the supplied UID */
+    public FBXObjectDefinition getConnectable(long uid) {
+        return connectableObjects.get(uid);
+    }
+
+    /** Returns a specific connectable object using the supplied name, for files which don't use UIDs */
     public FBXObjectDefinition getConnectable(String key) {
         return connectableObjects.get(key);
     }
 
-    /** Retrieves all the individual mesh objects in the scene. Only returns parent models that have geometry assigned */
+    /** Retrieves all the individual mesh objects in the scene, in file order. Only returns parent models that have geometry assigned */
     public ArrayList<FBXModelDefinition> getMeshDefinitions() {
+        // Walk up from each piece of geometry to the model at the top of its hierarchy
+        Set<FBXModelDefinition> meshRoots = Collections.newSetFromMap(new IdentityHashMap<FBXModelDefinition, Boolean>());
+        for (FBXModelDefinition geometry : geometries) {
+            FBXModelDefinition root = geometry;
+            while (root.parent != null) {
+                root = root.parent;
+            }
+            meshRoots.add(root);
+        }
+
         ArrayList<FBXModelDefinition> result = new ArrayList();
-        for (Entry<String, FBXObjectDefinition> entry : connectableObjects.entrySet()) {
-            if (entry.getValue() instanceof FBXModelDefinition) {
-                FBXModelDefinition test = (FBXModelDefinition) entry.getValue();
-                if (test.isRoot() && test.containsGeometryDefinition()) {
-                    result.add(test);
-                }
+        for (FBXModelDefinition model : models) {
+            if (meshRoots.contains(model)) {
+                result.add(model);
             }
         }
         return result;
@@ -186,12 +411,9 @@ public class FBXObjectNode extends FBXNode {
     /** Retrieves all "orphan" textures which aren't assigned to a mesh for some reason */
     public ArrayList<FBXTextureDefinition> getTextureDefinitions() {
         ArrayList<FBXTextureDefinition> result = new ArrayList();
-        for (Entry<String, FBXObjectDefinition> entry : connectableObjects.entrySet()) {
-            if (entry.getValue() instanceof FBXTextureDefinition) {
-                FBXTextureDefinition test = (FBXTextureDefinition) entry.getValue();
-                if (test.parent == null) {
-                    result.add(test);
-                }
+        for (FBXTextureDefinition texture : textures) {
+            if (texture.parent == null) {
+                result.add(texture);
             }
         }
         return result;
@@ -199,12 +421,9 @@ public class FBXObjectNode extends FBXNode {
 
     /** Get the root node for the mesh */
     public FBXLimbNodeDefinition getRootNode() {
-        for (Entry<String, FBXObjectDefinition> entry : connectableObjects.entrySet()) {
-            if (entry.getValue() instanceof FBXLimbNodeDefinition) {
-                FBXLimbNodeDefinition test = (FBXLimbNodeDefinition) entry.getValue();
-                if (test.isRoot) {
-                    return test;
-                }
+        for (FBXLimbNodeDefinition limbNode : limbNodes) {
+            if (limbNode.isRoot) {
+                return limbNode;
             }
         }
         return null;
@@ -0,0 +1,139 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.fbx.objects;
+
+import com.jumi.fbx.objects.definitions.FBXObjectDefinition;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * FBXObjectTable
+ * 
+ * Looks up object definitions by UID when resolving connections. UIDs are kept as primitive longs in an open
+ * addressing table, so a lookup doesn't format the UID as a String or box anything. Some older FBX files use
+ * names instead of UIDs; those go in a separate String map which is only used by such files.
+ * 
+ * Definitions are also kept in the order they were added, which is file order.
+ * 
+ * @author Richard Greenlees
+ */
+public class FBXObjectTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // A key of 0 marks an empty slot. 0 is never used as a UID, objects without one are keyed by name instead
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private FBXObjectDefinition[] values = new FBXObjectDefinition[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private final HashMap<String, FBXObjectDefinition> namedObjects = new HashMap();
+    private final ArrayList<FBXObjectDefinition> allObjects = new ArrayList();
+
+    /** Add a definition keyed by its UID, replacing any already using that UID */
+    public void put(long uid, FBXObjectDefinition definition) {
+        // Keep the table at most half full so probe sequences stay short
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+
+        int slot = findSlot(keys, uid);
+        if (keys[slot] == uid) {
+            replace(values[slot], definition);
+        } else {
+            keys[slot] = uid;
+            size++;
+            allObjects.add(definition);
+        }
+        values[slot] = definition;
+    }
+
+    /** Add a definition keyed by name, for files which don't use UIDs */
+    public void put(String name, FBXObjectDefinition definition) {
+        FBXObjectDefinition previous = namedObjects.put(name, definition);
+        if (previous != null) {
+            replace(previous, definition);
+        } else {
+            allObjects.add(definition);
+        }
+    }
+
+    /** Find the definition with the supplied UID, or null */
+    public FBXObjectDefinition get(long uid) {
+        if (uid == 0) {
+            return null;
+        }
+        int slot = findSlot(keys, uid);
+        return values[slot];
+    }
+
+    /** Find the definition with the supplied name, for files which don't use UIDs, or null */
+    public FBXObjectDefinition get(String name) {
+        return namedObjects.get(name);
+    }
+
+    /** Every definition, in the order they were added */
+    public ArrayList<FBXObjectDefinition> values() {
+        return allObjects;
+    }
+
+    public int size() {
+        return allObjects.size();
+    }
+
+    private void replace(FBXObjectDefinition previous, FBXObjectDefinition definition) {
+        allObjects.set(allObjects.indexOf(previous), definition);
+    }
+
+    /* The slot holding uid, or the empty slot where it would go */
+    private static int findSlot(long[] table, long uid) {
+        int mask = table.length - 1;
+        int slot = hash(uid) & mask;
+
+        while (table[slot] != 0 && table[slot] != uid) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /* UIDs are often sequential or share high bits, so mix them well before masking */
+    private static int hash(long uid) {
+        long h = uid;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private void resize(int newCapacity) {
+        long[] oldKeys = keys;
+        FBXObjectDefinition[] oldValues = values;
+
+        keys = new long[newCapacity];
+        values = new FBXObjectDefinition[newCapacity];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = findSlot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -18,180 +18,117 @@
  */
 package com.jumi.fbx.objects;
 
-import com.jumi.fbx.node.FBXNode;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import com.jumi.fbx.FBXBuffer;
+import com.jumi.fbx.FBXNames;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
-import java.util.zip.DataFormatException;
-import java.util.zip.Inflater;
 
 /**
  * FBXProperty
  * 
- * A single property definition, belonging to a nested item or node
+ * A single property definition, belonging to a nested item or node. Only the type, offset and length
+ * are recorded; values are decoded straight out of the buffer the property was read from.
  * 
  * @author Richard Greenlees
  */
 public class FBXProperty {
 
     public char typeCode;
-    public String dataType;
+    public FBXPropertyType dataType;
     public int dataLength;
-    private byte[] binaryData;
+    // The buffer holding this property's value. Normally the file we were parsed from, so nothing is copied
+    private FBXBuffer sourceData;
+    // Where the value starts in sourceData, and how many bytes it occupies
+    private long dataOffset;
+    private int payloadLength;
     private int dataSizeInBytes;
-    private int startPosition;
+    private long startPosition;
+    // Arrays are only decoded when asked for. A non-zero compressedSize means the payload needs inflating first
+    private int arrayLength;
+    private int compressedSize;
 
-    public FBXProperty(byte[] inputData, int cursorPosition) {
+    public FBXProperty(FBXBuffer inputData, long cursorPosition) {
+        sourceData = inputData;
         startPosition = cursorPosition;
-        typeCode = (char) (inputData[startPosition] & 0xFF);
+        typeCode = (char) (inputData.get(startPosition) & 0xFF);
 
         // Every FBX Property starts with a char indicating what data type it is. Self-explanatory hopefully.
-        switch (typeCode) {
-            case 'Y':
-                dataType = "Short";
-                dataSizeInBytes = 2;
-                parseValue(inputData);
-                break;
-            case 'C':
-                dataType = "Boolean";
-                dataSizeInBytes = 1;
-                parseValue(inputData);
-                break;
-            case 'F':
-                dataType = "Float";
-                dataSizeInBytes = 4;
-                parseValue(inputData);
-                break;
-            case 'I':
-                dataType = "Integer";
-                dataSizeInBytes = 4;
-                parseValue(inputData);
-                break;
-            case 'D':
-                dataType = "Double";
-                dataSizeInBytes = 8;
-                parseValue(inputData);
-                break;
-            case 'L':
-                dataType = "Long";
-                dataSizeInBytes = 8;
+        dataType = FBXPropertyType.forCode(typeCode);
+        if (dataType == null) {
+            System.err.println("Unknown property type! " + typeCode);
+            System.exit(-1);
+        }
+        dataSizeInBytes = dataType.elementSize;
+
+        switch (dataType.layout) {
+            case VALUE:
                 parseValue(inputData);
                 break;
-            case 'f':
-            case 'i':
-                dataType = "Integer Array";
-                dataSizeInBytes = 4;
-                parseArray(inputData);
-                break;
-            case 'd':
-                dataType = "Double Array";
-                dataSizeInBytes = 8;
-                parseArray(inputData);
-                break;
-            case 'l':
-                dataType = "Long Array";
-                dataSizeInBytes = 8;
-                parseArray(inputData);
-                break;
-            case 'b':
-                dataType = "Boolean Array";
-                dataSizeInBytes = 1;
+            case ARRAY:
                 parseArray(inputData);
                 break;
-            case 'S':
-                dataType = "String";
-                parseBinary(inputData);
-                break;
-            case 'R':
-                dataType = "Raw Binary Data";
+            case BINARY:
                 parseBinary(inputData);
                 break;
-            default:
-                System.err.println("Unknown property type! " + typeCode);
-                System.exit(-1);
-                break;
         }
     }
     
-    /* Simply extract the binary data based on the data size */
-    private void parseValue(byte[] inputData) {
-        binaryData = FBXNode.retrieveBytesFrom(inputData, dataSizeInBytes, startPosition + 1);
+    /* Simply record where the value lives, based on the data size */
+    private void parseValue(FBXBuffer inputData) {
+        dataOffset = startPosition + 1;
+        payloadLength = dataSizeInBytes;
         dataLength = dataSizeInBytes + 1;
     }
     
-    /* Slightly different, we need to determine the length of the binary data before we store it */
-    private void parseBinary(byte[] inputData) {
-        byte[] binaryLength = FBXNode.retrieveBytesFrom(inputData, 4, startPosition + 1);
-        int binarySize = ByteBuffer.wrap(binaryLength).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    /* Slightly different, we need to determine the length of the binary data first */
+    private void parseBinary(FBXBuffer inputData) {
+        int binarySize = inputData.getInt(startPosition + 1);
         
-        binaryData = FBXNode.retrieveBytesFrom(inputData, binarySize, startPosition + 5);
-
+        dataOffset = startPosition + 5;
+        payloadLength = binarySize;
         dataLength = 5 + binarySize;
     }
 
-    /* Slightly tricker. We need to determine the length of the data and whether it is compressed or not. Decompress if necessary */
-    private void parseArray(byte[] inputData) {
-        byte[] arrayData = null;
-
-        byte[] arrayLengthData = FBXNode.retrieveBytesFrom(inputData, 4, startPosition + 1);
-        int arrayLength = ByteBuffer.wrap(arrayLengthData).order(ByteOrder.LITTLE_ENDIAN).getInt();
-
-        byte[] encodingBytes = FBXNode.retrieveBytesFrom(inputData, 4, startPosition + 5);
-        int encoding = ByteBuffer.wrap(encodingBytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    /* Slightly tricker. We need to determine the length of the data and whether it is compressed or not.
+     * Nothing is decompressed here, that waits until the array is actually asked for */
+    private void parseArray(FBXBuffer inputData) {
+        arrayLength = inputData.getInt(startPosition + 1);
+        int encoding = inputData.getInt(startPosition + 5);
+        int storedSize = inputData.getInt(startPosition + 9);
 
-        byte[] compressionSizeBytes = FBXNode.retrieveBytesFrom(inputData, 4, startPosition + 9);
-        int compressedSize = ByteBuffer.wrap(compressionSizeBytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        dataOffset = startPosition + 13;
+        payloadLength = arrayLength * dataSizeInBytes;
+        dataLength = storedSize + 13;
 
         if (encoding == 1) {
-            byte[] compressedData = FBXNode.retrieveBytesFrom(inputData, compressedSize, startPosition + 13);
-            arrayData = decompressData(compressedData);
-
-        } else {
-            arrayData = FBXNode.retrieveBytesFrom(inputData, arrayLength * dataSizeInBytes, startPosition + 13);
+            compressedSize = storedSize;
         }
+    }
 
-        binaryData = arrayData;
-
-        if (encoding == 1) {
-            dataLength = compressedSize + 13;
-        } else {
-            dataLength = (arrayLength * dataSizeInBytes) + 13;
+    /* Little-endian view of the value, used for bulk array conversion. Compressed arrays are inflated into
+     * per-thread scratch space, so the view must be used up before anything else is inflated */
+    private ByteBuffer wrapPayload() {
+        if (compressedSize > 0) {
+            return sourceData.inflate(dataOffset, compressedSize, payloadLength);
         }
+        return sourceData.view(dataOffset, payloadLength);
     }
 
-    /* Inflates compressed binary data to give you the final binary data in an array */
-    private byte[] decompressData(byte[] compressedData) {
-
-        Inflater decompressor = new Inflater();
-        decompressor.setInput(compressedData);
-
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(compressedData.length);
-        byte[] buffer = new byte[1024];
-        while (!decompressor.finished()) {
-            try {
-                int count = decompressor.inflate(buffer);
-                outputStream.write(buffer, 0, count);
-            } catch (DataFormatException e) {
-                e.printStackTrace();
+    /** Express this property as an array of integers. Float arrays are truncated */
+    public int[] asIntArray() {
+        if (typeCode == 'f') {
+            FloatBuffer floatBuffer = wrapPayload().asFloatBuffer();
+            int[] result = new int[floatBuffer.remaining()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (int) floatBuffer.get(i);
             }
+            return result;
         }
-        try {
-            outputStream.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        decompressor.end();
-        return outputStream.toByteArray();
 
-    }
-
-    /** Express this property as an array of integers */
-    public int[] asIntArray() {
-        IntBuffer intBuffer = ByteBuffer.wrap(binaryData).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        IntBuffer intBuffer = wrapPayload().asIntBuffer();
         int[] result = new int[intBuffer.remaining()];
         intBuffer.get(result);
 
@@ -200,7 +137,16 @@ public class FBXProperty {
     
     /** Express this property as an array of longs */
     public long[] asLongArray() {
-        LongBuffer longBuffer = ByteBuffer.wrap(binaryData).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        if (typeCode == 'i') {
+            IntBuffer intBuffer = wrapPayload().asIntBuffer();
+            long[] result = new long[intBuffer.remaining()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = intBuffer.get(i);
+            }
+            return result;
+        }
+
+        LongBuffer longBuffer = wrapPayload().asLongBuffer();
         long[] result = new long[longBuffer.remaining()];
         longBuffer.get(result);
 
@@ -209,7 +155,26 @@ public class FBXProperty {
 
     /** Express this property as an array of doubles */
     public double[] asDoubleArray() {
-        DoubleBuffer doubleBuffer = ByteBuffer.wrap(binaryData).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        // Float and integer arrays are widened one value at a time, as reading them as doubles would pair up their bytes
+        if (typeCode == 'f') {
+            FloatBuffer floatBuffer = wrapPayload().asFloatBuffer();
+            double[] result = new double[floatBuffer.remaining()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = floatBuffer.get(i);
+            }
+            return result;
+        }
+
+        if (typeCode == 'i') {
+            IntBuffer intBuffer = wrapPayload().asIntBuffer();
+            double[] result = new double[intBuffer.remaining()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = intBuffer.get(i);
+            }
+            return result;
+        }
+
+        DoubleBuffer doubleBuffer = wrapPayload().asDoubleBuffer();
         double[] result = new double[doubleBuffer.remaining()];
         doubleBuffer.get(result);
 
@@ -218,15 +183,32 @@ public class FBXProperty {
 
     /** Express this property as an array of floats */
     public float[] asFloatArray() {
-        float[] result;
-        DoubleBuffer doubleBuffer = ByteBuffer.wrap(binaryData).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
-        double[] interim = new double[doubleBuffer.remaining()];
-        doubleBuffer.get(interim);
+        // Float arrays are already what we want, so copy them straight across
+        if (typeCode == 'f') {
+            FloatBuffer floatBuffer = wrapPayload().asFloatBuffer();
+            float[] result = new float[floatBuffer.remaining()];
+            floatBuffer.get(result);
+
+            return result;
+        }
+
+        // Whole numbers written as text come out as integer arrays
+        if (typeCode == 'i') {
+            IntBuffer intBuffer = wrapPayload().asIntBuffer();
+            float[] result = new float[intBuffer.remaining()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = intBuffer.get(i);
+            }
+            return result;
+        }
 
-        result = new float[interim.length];
+        // Narrow each double as it's read, rather than going through a temporary double[] of the whole array
+        ByteBuffer payload = wrapPayload();
+        int start = payload.position();
+        float[] result = new float[payload.remaining() / 8];
 
-        for (int i = 0; i < interim.length; i++) {
-            result[i] = (float) interim[i];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (float) payload.getDouble(start + (i << 3));
         }
 
         return result;
@@ -234,55 +216,125 @@ public class FBXProperty {
 
     /** Express this property as a String */
     public String asString() {
-        return new String(binaryData);
+        return new String(sourceData.getBytes(dataOffset, payloadLength));
+    }
+    
+    /** Express this String property as an FBXNames ID, without creating the String */
+    public int asNameID() {
+        return FBXNames.lookup(sourceData, dataOffset, payloadLength);
     }
     
     /** Express this property as a short */
     public short asShort() {
-        return ByteBuffer.wrap(binaryData).order(ByteOrder.LITTLE_ENDIAN).getShort();
+        return sourceData.getShort(dataOffset);
     }
 
     /** Express this property as a long */
     public long asLong() {
-        return ByteBuffer.wrap(binaryData).order(ByteOrder.LITTLE_ENDIAN).getLong();
+        if (typeCode == 'I') {
+            return sourceData.getInt(dataOffset);
+        }
+        return sourceData.getLong(dataOffset);
     }
     
     /** Express this property as a double */
     public double asDouble() {
-        return ByteBuffer.wrap(binaryData).order(ByteOrder.LITTLE_ENDIAN).getDouble();
+        return sourceData.getDouble(dataOffset);
     }
     
     /** Express this property as a float */
     public float asFloat() {
-        if (dataType.equals("Float")) {
-            return ByteBuffer.wrap(binaryData).order(ByteOrder.LITTLE_ENDIAN).getFloat();
-        } else {
-            return (float) ByteBuffer.wrap(binaryData).order(ByteOrder.LITTLE_ENDIAN).getDouble();
+        switch (typeCode) {
+            case 'F':
+                return sourceData.getFloat(dataOffset);
+            case 'I':
+                return sourceData.getInt(dataOffset);
+            default:
+                return (float) sourceData.getDouble(dataOffset);
         }
     }
     
     /** Express this property as a boolean */
     public boolean asBoolean() {
-        return (binaryData[0] != 0);
+        return (sourceData.get(dataOffset) != 0);
     }
     
     /** Express this property as an array of booleans */
     public boolean[] asBooleanArray() {
-        boolean[] result = new boolean[binaryData.length];
-        for (int i = 0; i < binaryData.length; i++) {
-            result[i] = (binaryData[i] != 0);
+        ByteBuffer payload = wrapPayload();
+        boolean[] result = new boolean[payload.remaining()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (payload.get() != 0);
         }
         return result;
     }
     
-    /** Express this property as raw binary */
+    /** Express this property as raw binary, copied out of the source */
     public byte[] asByteArray() {
-        return binaryData;
+        if (compressedSize > 0) {
+            byte[] result = new byte[payloadLength];
+            wrapPayload().get(result);
+            return result;
+        }
+        return sourceData.getBytes(dataOffset, payloadLength);
     }
     
-    /** Express this property as an integer */
+    /** Express this property as a read-only buffer over its raw binary. Data in a mapped file isn't copied, the
+     * buffer is a view of the mapping. Anything else is copied, so the buffer doesn't keep the whole file on the heap */
+    public ByteBuffer asByteBuffer() {
+        if (compressedSize == 0 && sourceData.isMapped()) {
+            return sourceData.view(dataOffset, payloadLength).asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(asByteArray()).asReadOnlyBuffer();
+    }
+    
+    /** Express this property as an integer. Floats are truncated */
     public int asInteger() {
-        return ByteBuffer.wrap(binaryData).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        if (typeCode == 'F') {
+            return (int) sourceData.getFloat(dataOffset);
+        }
+        return sourceData.getInt(dataOffset);
+    }
+
+    /** Decode floating point data held either as one array ('d' or 'f') or as one value per property ('D' or 'F').
+     * Whole numbers ('i' or 'I'), as found in ASCII files, are converted
+     * @return The values, or null if the properties hold some other type */
+    public static float[] toFloatArray(FBXProperty[] properties) {
+        switch (properties[0].typeCode) {
+            case 'd':
+            case 'f':
+            case 'i':
+                return properties[0].asFloatArray();
+            case 'D':
+            case 'F':
+            case 'I':
+                float[] result = new float[properties.length];
+                for (int i = 0; i < properties.length; i++) {
+                    result[i] = properties[i].asFloat();
+                }
+                return result;
+            default:
+                return null;
+        }
+    }
+
+    /** Decode integer data held either as one array ('i' or 'f') or as one value per property ('I' or 'F')
+     * @return The values, or null if the properties hold some other type */
+    public static int[] toIntArray(FBXProperty[] properties) {
+        switch (properties[0].typeCode) {
+            case 'i':
+            case 'f':
+                return properties[0].asIntArray();
+            case 'I':
+            case 'F':
+                int[] result = new int[properties.length];
+                for (int i = 0; i < properties.length; i++) {
+                    result[i] = properties[i].asInteger();
+                }
+                return result;
+            default:
+                return null;
+        }
     }
     
     public String toString() {
@@ -308,6 +360,8 @@ public class FBXProperty {
                 result = result + asLong();
                 break;
             case 'f':
+                result = result + "{ " + asFloatArray()[0] + "...}";
+                break;
             case 'i':
                 result = result + "{ " + asIntArray()[0] + "...}";
                 break;
@@ -324,7 +378,7 @@ public class FBXProperty {
                 result = result + asString();
                 break;
             case 'R':
-                result = result + "{ BINARY ... (" + binaryData.length + " bytes) }";
+                result = result + "{ BINARY ... (" + payloadLength + " bytes) }";
                 break;
             default:
                 result = result + "ERROR! Unknown type";
@@ -0,0 +1,79 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.fbx.objects;
+
+/**
+ * FBXPropertyType
+ * 
+ * The data types a binary FBX property can hold, one per type code. Each knows the size of a single element
+ * and how the value is laid out in the file.
+ * 
+ * @author Richard Greenlees
+ */
+public enum FBXPropertyType {
+    SHORT('Y', "Short", 2, Layout.VALUE),
+    BOOLEAN('C', "Boolean", 1, Layout.VALUE),
+    FLOAT('F', "Float", 4, Layout.VALUE),
+    INTEGER('I', "Integer", 4, Layout.VALUE),
+    DOUBLE('D', "Double", 8, Layout.VALUE),
+    LONG('L', "Long", 8, Layout.VALUE),
+    FLOAT_ARRAY('f', "Float Array", 4, Layout.ARRAY),
+    INTEGER_ARRAY('i', "Integer Array", 4, Layout.ARRAY),
+    DOUBLE_ARRAY('d', "Double Array", 8, Layout.ARRAY),
+    LONG_ARRAY('l', "Long Array", 8, Layout.ARRAY),
+    BOOLEAN_ARRAY('b', "Boolean Array", 1, Layout.ARRAY),
+    STRING('S', "String", 1, Layout.BINARY),
+    RAW('R', "Raw Binary Data", 1, Layout.BINARY);
+
+    /** How a value is stored: a fixed size value, an array with a header, or a length-prefixed run of bytes */
+    public enum Layout {
+        VALUE, ARRAY, BINARY
+    }
+
+    // Indexed by type code
+    private static final FBXPropertyType[] BY_CODE = new FBXPropertyType[128];
+
+    static {
+        for (FBXPropertyType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    public final char code;
+    public final int elementSize;
+    public final Layout layout;
+    private final String description;
+
+    private FBXPropertyType(char inCode, String inDescription, int inElementSize, Layout inLayout) {
+        code = inCode;
+        description = inDescription;
+        elementSize = inElementSize;
+        layout = inLayout;
+    }
+
+    /** The type with the supplied type code, or null if there isn't one */
+    public static FBXPropertyType forCode(int typeCode) {
+        return (typeCode >= 0 && typeCode < BY_CODE.length) ? BY_CODE[typeCode] : null;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -18,6 +18,7 @@
  */
 package com.jumi.fbx.objects.definitions;
 
+import com.jumi.fbx.FBXNames;
 import com.jumi.fbx.objects.FBXProperty;
 
 /**
@@ -32,30 +33,38 @@ public class FBXAnimCurveDefinition extends FBXObjectDefinition {
     public static final long FBX_TC_MILLIS = 46186158L;
     
     long[] keyTime = new long[0];
-    int[] keyValueFloat = new int[0];
+    float[] keyValueFloat = new float[0];
     int[] keyAttrFlags = new int[0];
-    int[] keyAttrDataFloat = new int[0];
+    float[] keyAttrDataFloat = new float[0];
     int[] keyAttrRefCount = new int[0];
     
     public FBXAnimCurveDefinition(long UID, String inName) {
-        super(UID, inName);
+        super(TYPE_ANIM_CURVE, UID, inName);
     }
     
     public FBXAnimCurveDefinition(long inUID) {
-        super(inUID);
+        super(TYPE_ANIM_CURVE, inUID);
     }
     
+    // Only the keyframe arrays are read
+    private static final boolean[] CONSUMED_NODES = nodeIDs(FBXNames.KEY_TIME, FBXNames.KEY_VALUE_FLOAT, FBXNames.KEY_ATTR_FLAGS, FBXNames.KEY_ATTR_DATA_FLOAT, FBXNames.KEY_ATTR_REF_COUNT);
+
+    @Override
+    protected boolean[] getConsumedNodes() {
+        return CONSUMED_NODES;
+    }
+
     @Override
-    public void readNestedObject(String nestedName, FBXProperty[] properties) {
-        if (nestedName.equals("KeyTime")) {
+    public void readNestedObject(int nestedID, FBXProperty[] properties) {
+        if (nestedID == FBXNames.KEY_TIME) {
             keyTime = properties[0].asLongArray();            
-        } else if (nestedName.equals("KeyValueFloat")) {
-            keyValueFloat = properties[0].asIntArray();
-        } else if (nestedName.equals("KeyAttrFlags")) {
+        } else if (nestedID == FBXNames.KEY_VALUE_FLOAT) {
+            keyValueFloat = properties[0].asFloatArray();
+        } else if (nestedID == FBXNames.KEY_ATTR_FLAGS) {
             keyAttrFlags = properties[0].asIntArray();
-        } else if (nestedName.equals("KeyAttrDataFloat")) {
-            keyAttrDataFloat = properties[0].asIntArray();
-        } else if (nestedName.equals("KeyAttrRefCount")) {
+        } else if (nestedID == FBXNames.KEY_ATTR_DATA_FLOAT) {
+            keyAttrDataFloat = properties[0].asFloatArray();
+        } else if (nestedID == FBXNames.KEY_ATTR_REF_COUNT) {
             keyAttrRefCount = properties[0].asIntArray();
         }
     }
@@ -18,6 +18,7 @@
  */
 package com.jumi.fbx.objects.definitions;
 
+import com.jumi.fbx.FBXNames;
 import com.jumi.fbx.objects.FBXProperty;
 
 /**
@@ -36,26 +37,34 @@ public class FBXAnimCurveNodeDefinition extends FBXObjectDefinition {
     public FBXAnimCurveDefinition animationCurve;
     
     public FBXAnimCurveNodeDefinition(long UID, String inName) {
-        super(UID, inName);
+        super(TYPE_ANIM_CURVE_NODE, UID, inName);
     }
     
     public FBXAnimCurveNodeDefinition(long inUID) {
-        super(inUID);
+        super(TYPE_ANIM_CURVE_NODE, inUID);
     }
     
+    // Only the embedded properties are read
+    private static final boolean[] CONSUMED_NODES = nodeIDs(FBXNames.PROPERTIES60, FBXNames.PROPERTIES70, FBXNames.P, FBXNames.PROPERTY);
+
+    @Override
+    protected boolean[] getConsumedNodes() {
+        return CONSUMED_NODES;
+    }
+
     @Override
-    public void readNestedObject(String nestedName, FBXProperty[] properties) {
+    public void readNestedObject(int nestedID, FBXProperty[] properties) {
         
     }
 
     @Override
     public void readEmbeddedProperty(FBXProperty[] properties) {
-        String propertyName = properties[0].asString();
-        if (propertyName.equals("d|X")) {
+        int propertyID = properties[0].asNameID();
+        if (propertyID == FBXNames.D_X) {
             dX = properties[properties.length-1].asFloat();
-        } else if (propertyName.equals("d|Y")) {
+        } else if (propertyID == FBXNames.D_Y) {
             dY = properties[properties.length-1].asFloat();
-        } else if (propertyName.equals("d|Z")) {
+        } else if (propertyID == FBXNames.D_Z) {
             dZ = properties[properties.length-1].asFloat();
         }
     }
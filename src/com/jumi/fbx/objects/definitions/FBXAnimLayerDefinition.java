@@ -18,6 +18,7 @@
  */
 package com.jumi.fbx.objects.definitions;
 
+import com.jumi.fbx.FBXNames;
 import com.jumi.fbx.objects.FBXProperty;
 import java.util.ArrayList;
 
@@ -33,15 +34,23 @@ public class FBXAnimLayerDefinition extends FBXObjectDefinition {
     public ArrayList<FBXAnimCurveNodeDefinition> curveNodes = new ArrayList();
 
     public FBXAnimLayerDefinition(long UID, String inName) {
-        super(UID, inName);
+        super(TYPE_ANIM_LAYER, UID, inName);
     }
     
     public FBXAnimLayerDefinition(long inUID) {
-        super(inUID);
+        super(TYPE_ANIM_LAYER, inUID);
     }
     
+    // Nothing nested is read yet
+    private static final boolean[] CONSUMED_NODES = nodeIDs();
+
+    @Override
+    protected boolean[] getConsumedNodes() {
+        return CONSUMED_NODES;
+    }
+
     @Override
-    public void readNestedObject(String nestedName, FBXProperty[] properties) {
+    public void readNestedObject(int nestedID, FBXProperty[] properties) {
         
     }
 
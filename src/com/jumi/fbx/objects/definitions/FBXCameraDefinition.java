@@ -18,6 +18,7 @@
  */
 package com.jumi.fbx.objects.definitions;
 
+import com.jumi.fbx.FBXNames;
 import com.jumi.fbx.objects.FBXProperty;
 
 /**
@@ -30,15 +31,23 @@ import com.jumi.fbx.objects.FBXProperty;
 public class FBXCameraDefinition extends FBXObjectDefinition {
     
     public FBXCameraDefinition(long inUID, String inName) {
-        super(inUID, inName);
+        super(TYPE_CAMERA, inUID, inName);
     }
     
     public FBXCameraDefinition(long inUID) {
-        super(inUID);
+        super(TYPE_CAMERA, inUID);
+    }
+
+    // Nothing nested is read yet
+    private static final boolean[] CONSUMED_NODES = nodeIDs();
+
+    @Override
+    protected boolean[] getConsumedNodes() {
+        return CONSUMED_NODES;
     }
 
     @Override
-    public void readNestedObject(String nestedName, FBXProperty[] properties) {
+    public void readNestedObject(int nestedID, FBXProperty[] properties) {
         
     }
 
@@ -18,6 +18,7 @@
  */
 package com.jumi.fbx.objects.definitions;
 
+import com.jumi.fbx.FBXNames;
 import com.jumi.scene.objects.JUMISubDeformer;
 import com.jumi.fbx.objects.FBXProperty;
 
@@ -38,58 +39,50 @@ public class FBXClusterDefinition extends FBXObjectDefinition {
     public FBXLimbNodeDefinition limbNode;
     
     public FBXClusterDefinition(long UID, String name) {
-        super(UID, name);
+        super(TYPE_CLUSTER, UID, name);
     }
     
     public FBXClusterDefinition(long inUID) {
-        super(inUID);
+        super(TYPE_CLUSTER, inUID);
+    }
+
+    // Only the skinning arrays are read
+    private static final boolean[] CONSUMED_NODES = nodeIDs(FBXNames.INDEXES, FBXNames.WEIGHTS, FBXNames.TRANSFORM, FBXNames.TRANSFORM_LINK);
+
+    @Override
+    protected boolean[] getConsumedNodes() {
+        return CONSUMED_NODES;
     }
 
     @Override
-    public void readNestedObject(String nestedName, FBXProperty[] properties) {
-        if (nestedName.equals("Indexes") && properties.length > 0) {
-            if (properties[0].typeCode == 'i' || properties[0].typeCode == 'f') {
-                indexes = properties[0].asIntArray();
-            } else if (properties[0].typeCode == 'I' || properties[0].typeCode == 'F') {
-                indexes = new int[properties.length];
-                for (int i = 0; i < properties.length; i++) {
-                    indexes[i] = properties[i].asInteger();
-                }
+    public void readNestedObject(int nestedID, FBXProperty[] properties) {
+        if (nestedID == FBXNames.INDEXES && properties.length > 0) {
+            int[] decodedIndexes = FBXProperty.toIntArray(properties);
+            if (decodedIndexes != null) {
+                indexes = decodedIndexes;
             } else {
-                System.err.println("Invalid indices data type! Expected: integer or array of integers, actual: " + properties[0].dataType);
+                System.err.println("Invalid indices data type! Expected: integer, float or an array of either, actual: " + properties[0].dataType);
             }
-        } else if (nestedName.equals("Weights") && properties.length > 0) {
-            if (properties[0].typeCode == 'd') {
-                weights = properties[0].asFloatArray();
-            } else if (properties[0].typeCode == 'D') {
-                weights = new float[properties.length];
-                for (int i = 0; i < properties.length; i++) {
-                    weights[i] = (float) properties[i].asDouble();
-                }
+        } else if (nestedID == FBXNames.WEIGHTS && properties.length > 0) {
+            float[] decodedWeights = FBXProperty.toFloatArray(properties);
+            if (decodedWeights != null) {
+                weights = decodedWeights;
             } else {
-                System.err.println("Invalid UV data type! Expected: double or array of doubles, actual: " + properties[0].dataType);
+                System.err.println("Invalid weights data type! Expected: float, double or an array of either, actual: " + properties[0].dataType);
             }
-        } else if (nestedName.equals("Transform") && properties.length > 0) {
-            if (properties[0].typeCode == 'd') {
-                transforms = properties[0].asFloatArray();
-            } else if (properties[0].typeCode == 'D') {
-                transforms = new float[properties.length];
-                for (int i = 0; i < properties.length; i++) {
-                    transforms[i] = (float) properties[i].asDouble();
-                }
+        } else if (nestedID == FBXNames.TRANSFORM && properties.length > 0) {
+            float[] decodedTransforms = FBXProperty.toFloatArray(properties);
+            if (decodedTransforms != null) {
+                transforms = decodedTransforms;
             } else {
-                System.err.println("Invalid UV data type! Expected: double or array of doubles, actual: " + properties[0].dataType);
+                System.err.println("Invalid transform data type! Expected: float, double or an array of either, actual: " + properties[0].dataType);
             }
-        } else if (nestedName.equals("TransformLink") && properties.length > 0) {
-            if (properties[0].typeCode == 'd') {
-                transformLinks = properties[0].asFloatArray();
-            } else if (properties[0].typeCode == 'D') {
-                transformLinks = new float[properties.length];
-                for (int i = 0; i < properties.length; i++) {
-                    transformLinks[i] = (float) properties[i].asDouble();
-                }
+        } else if (nestedID == FBXNames.TRANSFORM_LINK && properties.length > 0) {
+            float[] decodedTransformLinks = FBXProperty.toFloatArray(properties);
+            if (decodedTransformLinks != null) {
+                transformLinks = decodedTransformLinks;
             } else {
-                System.err.println("Invalid UV data type! Expected: double or array of doubles, actual: " + properties[0].dataType);
+                System.err.println("Invalid transform link data type! Expected: float, double or an array of either, actual: " + properties[0].dataType);
             }
         }
     }
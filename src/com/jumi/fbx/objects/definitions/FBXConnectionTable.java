@@ -0,0 +1,222 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.fbx.objects.definitions;
+
+import static com.jumi.fbx.objects.definitions.FBXObjectDefinition.*;
+
+/**
+ * FBXConnectionTable
+ * 
+ * Holds one connector for each (child type, parent type) pair JUMI understands, indexed by the type IDs in
+ * FBXObjectDefinition, and null for every other pair. Each connector casts straight to the two concrete classes,
+ * so connecting is one table lookup and one direct call.
+ * 
+ * @author Richard Greenlees
+ */
+final class FBXConnectionTable {
+    
+    static final FBXConnector[][] CONNECTORS = build();
+    
+    private FBXConnectionTable() {
+    }
+    
+    private static FBXConnector[][] build() {
+        FBXConnector[][] table = new FBXConnector[TYPE_COUNT][TYPE_COUNT];
+
+        // Model
+        table[TYPE_MODEL][TYPE_MODEL] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXModelDefinition) child).connect((FBXModelDefinition) parent);
+            }
+        };
+        table[TYPE_MODEL][TYPE_TEXTURE] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXModelDefinition) child).connect((FBXTextureDefinition) parent);
+            }
+        };
+        table[TYPE_MODEL][TYPE_MATERIAL] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXModelDefinition) child).connect((FBXMaterialDefinition) parent);
+            }
+        };
+        table[TYPE_MODEL][TYPE_LIMB_NODE] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXModelDefinition) child).connect((FBXLimbNodeDefinition) parent);
+            }
+        };
+        table[TYPE_MODEL][TYPE_SKIN_DEFORMER] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXModelDefinition) child).connect((FBXSkinDeformerDefinition) parent);
+            }
+        };
+
+        // Texture
+        table[TYPE_TEXTURE][TYPE_MODEL] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXTextureDefinition) child).connect((FBXModelDefinition) parent);
+            }
+        };
+        table[TYPE_TEXTURE][TYPE_TEXTURE] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXTextureDefinition) child).connect((FBXTextureDefinition) parent);
+            }
+        };
+        table[TYPE_TEXTURE][TYPE_MATERIAL] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXTextureDefinition) child).connect((FBXMaterialDefinition) parent);
+            }
+        };
+        table[TYPE_TEXTURE][TYPE_MEDIA] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXTextureDefinition) child).connect((FBXMediaDefinition) parent);
+            }
+        };
+        table[TYPE_TEXTURE][TYPE_LIMB_NODE] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXTextureDefinition) child).connect((FBXLimbNodeDefinition) parent);
+            }
+        };
+
+        // Material
+        table[TYPE_MATERIAL][TYPE_MODEL] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXMaterialDefinition) child).connect((FBXModelDefinition) parent);
+            }
+        };
+        table[TYPE_MATERIAL][TYPE_TEXTURE] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXMaterialDefinition) child).connect((FBXTextureDefinition) parent);
+            }
+        };
+
+        // Media
+        table[TYPE_MEDIA][TYPE_TEXTURE] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXMediaDefinition) child).connect((FBXTextureDefinition) parent);
+            }
+        };
+
+        // Limb Node
+        table[TYPE_LIMB_NODE][TYPE_MODEL] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXLimbNodeDefinition) child).connect((FBXModelDefinition) parent);
+            }
+        };
+        table[TYPE_LIMB_NODE][TYPE_LIMB_NODE] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXLimbNodeDefinition) child).connect((FBXLimbNodeDefinition) parent);
+            }
+        };
+        table[TYPE_LIMB_NODE][TYPE_CLUSTER] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXLimbNodeDefinition) child).connect((FBXClusterDefinition) parent);
+            }
+        };
+
+        // Skin Deformer
+        table[TYPE_SKIN_DEFORMER][TYPE_MODEL] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXSkinDeformerDefinition) child).connect((FBXModelDefinition) parent);
+            }
+        };
+        table[TYPE_SKIN_DEFORMER][TYPE_CLUSTER] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXSkinDeformerDefinition) child).connect((FBXClusterDefinition) parent);
+            }
+        };
+
+        // Cluster
+        table[TYPE_CLUSTER][TYPE_LIMB_NODE] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXClusterDefinition) child).connect((FBXLimbNodeDefinition) parent);
+            }
+        };
+        table[TYPE_CLUSTER][TYPE_SKIN_DEFORMER] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXClusterDefinition) child).connect((FBXSkinDeformerDefinition) parent);
+            }
+        };
+
+        // Anim Curve
+        table[TYPE_ANIM_CURVE][TYPE_ANIM_CURVE_NODE] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXAnimCurveDefinition) child).connect((FBXAnimCurveNodeDefinition) parent);
+            }
+        };
+
+        // Anim Curve Node
+        table[TYPE_ANIM_CURVE_NODE][TYPE_ANIM_CURVE] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXAnimCurveNodeDefinition) child).connect((FBXAnimCurveDefinition) parent);
+            }
+        };
+        table[TYPE_ANIM_CURVE_NODE][TYPE_ANIM_LAYER] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXAnimCurveNodeDefinition) child).connect((FBXAnimLayerDefinition) parent);
+            }
+        };
+
+        // Anim Layer
+        table[TYPE_ANIM_LAYER][TYPE_ANIM_CURVE_NODE] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXAnimLayerDefinition) child).connect((FBXAnimCurveNodeDefinition) parent);
+            }
+        };
+        table[TYPE_ANIM_LAYER][TYPE_ANIM_STACK] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXAnimLayerDefinition) child).connect((FBXAnimStackDefinition) parent);
+            }
+        };
+
+        // Anim Stack
+        table[TYPE_ANIM_STACK][TYPE_ANIM_LAYER] = new FBXConnector() {
+            @Override
+            public void connect(FBXObjectDefinition child, FBXObjectDefinition parent) {
+                ((FBXAnimStackDefinition) child).connect((FBXAnimLayerDefinition) parent);
+            }
+        };
+
+        return table;
+    }
+}
@@ -18,6 +18,7 @@
  */
 package com.jumi.fbx.objects.definitions;
 
+import com.jumi.fbx.FBXNames;
 import com.jumi.data.Vector3;
 import com.jumi.fbx.objects.FBXProperty;
 import com.jumi.scene.objects.JUMIBone;
@@ -44,11 +45,11 @@ public class FBXLimbNodeDefinition extends FBXObjectDefinition {
     public boolean isRoot = true;
 
     public FBXLimbNodeDefinition(long inUID, String inName) {
-        super(inUID, inName);
+        super(TYPE_LIMB_NODE, inUID, inName);
     }
 
     public FBXLimbNodeDefinition(long inUID) {
-        super(inUID);
+        super(TYPE_LIMB_NODE, inUID);
     }
 
     public JUMIBone createSkeleton() {
@@ -76,7 +77,15 @@ public class FBXLimbNodeDefinition extends FBXObjectDefinition {
 
     }
 
-    public void readNestedObject(String nestedName, FBXProperty[] properties) {
+    // Only the embedded properties are read
+    private static final boolean[] CONSUMED_NODES = nodeIDs(FBXNames.PROPERTIES60, FBXNames.PROPERTIES70, FBXNames.P, FBXNames.PROPERTY);
+
+    @Override
+    protected boolean[] getConsumedNodes() {
+        return CONSUMED_NODES;
+    }
+
+    public void readNestedObject(int nestedID, FBXProperty[] properties) {
 
     }
     
@@ -85,21 +94,21 @@ public class FBXLimbNodeDefinition extends FBXObjectDefinition {
     }
 
     public void readEmbeddedProperty(FBXProperty[] properties) {
-        String propertyName = properties[0].asString();
+        int propertyID = properties[0].asNameID();
 
-        if (propertyName.equals("Lcl Translation")) {
+        if (propertyID == FBXNames.LCL_TRANSLATION) {
             float x = properties[properties.length - 3].asFloat();
             float y = properties[properties.length - 2].asFloat();
             float z = properties[properties.length - 1].asFloat();
 
             localTranslation.set(x, y, z);
-        } else if (propertyName.equals("Lcl Rotation")) {
+        } else if (propertyID == FBXNames.LCL_ROTATION) {
             float x = properties[properties.length - 3].asFloat();
             float y = properties[properties.length - 2].asFloat();
             float z = properties[properties.length - 1].asFloat();
 
             localRotation.set(x, y, z);
-        } else if (propertyName.equals("Lcl Scaling")) {
+        } else if (propertyID == FBXNames.LCL_SCALING) {
             float x = properties[properties.length - 3].asFloat();
             float y = properties[properties.length - 2].asFloat();
             float z = properties[properties.length - 1].asFloat();
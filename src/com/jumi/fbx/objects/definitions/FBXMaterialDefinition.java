@@ -18,6 +18,7 @@
  */
 package com.jumi.fbx.objects.definitions;
 
+import com.jumi.fbx.FBXNames;
 import com.jumi.data.Color;
 import com.jumi.scene.objects.JUMIMaterial;
 import com.jumi.scene.objects.JUMITexture;
@@ -50,61 +51,69 @@ public class FBXMaterialDefinition extends FBXObjectDefinition {
     public ArrayList<FBXTextureDefinition> textures = new ArrayList();
 
     public FBXMaterialDefinition(long inUID, String inName) {
-        super(inUID, inName);
+        super(TYPE_MATERIAL, inUID, inName);
     }
 
     public FBXMaterialDefinition(long inUID) {
-        super(inUID);
+        super(TYPE_MATERIAL, inUID);
     }
 
     @Override
     public void readEmbeddedProperty(FBXProperty[] properties) {
-        String propertyName = properties[0].asString();
-        String propertyType = properties[1].asString();
+        int propertyID = properties[0].asNameID();
+        int propertyTypeID = properties[1].asNameID();
 
-        switch (propertyType) {
-            case "Color":
-            case "ColorRGB":
+        switch (propertyTypeID) {
+            case FBXNames.COLOR:
+            case FBXNames.COLOR_RGB:
                 float r = properties[properties.length - 3].asFloat();
                 float g = properties[properties.length - 2].asFloat();
                 float b = properties[properties.length - 1].asFloat();
 
                 Color newColor = new Color(r, g, b);
                 
-                switch(propertyName) {
-                    case "Ambient":
-                    case "AmbientColor":
+                switch(propertyID) {
+                    case FBXNames.AMBIENT:
+                    case FBXNames.AMBIENT_COLOR:
                         ambientColor = newColor; break;
-                    case "Specular":
-                    case "SpecularColor":
+                    case FBXNames.SPECULAR:
+                    case FBXNames.SPECULAR_COLOR:
                         specularColor = newColor; break;
-                    case "Diffuse":
-                    case "DiffuseColor":
+                    case FBXNames.DIFFUSE:
+                    case FBXNames.DIFFUSE_COLOR:
                         diffuseColor = newColor; break;
-                    case "Emissive":
-                    case "EmissiveColor":
+                    case FBXNames.EMISSIVE:
+                    case FBXNames.EMISSIVE_COLOR:
                         emissiveColor = newColor; break;
                     default: break;
                 }
                 break;
-            case "TransparencyFactor":
+            case FBXNames.TRANSPARENCY_FACTOR:
                 transparencyFactor = properties[properties.length - 1].asFloat(); break;
-            case "SpecularFactor":
+            case FBXNames.SPECULAR_FACTOR:
                 specularFactor = properties[properties.length - 1].asFloat(); break;
-            case "ReflectionFactor":
+            case FBXNames.REFLECTION_FACTOR:
                 reflectionFactor = properties[properties.length - 1].asFloat(); break;
-            case "Shininess":
+            case FBXNames.SHININESS:
                 shininess = properties[properties.length - 1].asFloat(); break;
-            case "Opacity":
+            case FBXNames.OPACITY:
                 opacity = properties[properties.length - 1].asFloat(); break;
-            case "Reflectivity":
+            case FBXNames.REFLECTIVITY:
                 reflectivity = properties[properties.length - 1].asFloat(); break;
             default: break;
         }
     }
 
+    // Only the embedded properties are read
+    private static final boolean[] CONSUMED_NODES = nodeIDs(FBXNames.PROPERTIES60, FBXNames.PROPERTIES70, FBXNames.P, FBXNames.PROPERTY);
+
+    @Override
+    protected boolean[] getConsumedNodes() {
+        return CONSUMED_NODES;
+    }
+
     @Override
-    public void readNestedObject(String nestedName, FBXProperty[] properties) {
+    public void readNestedObject(int nestedID, FBXProperty[] properties) {
 
     }
 
@@ -18,7 +18,12 @@
  */
 package com.jumi.fbx.objects.definitions;
 
+import com.jumi.fbx.FBXNames;
+import com.jumi.data.XXHash64;
 import com.jumi.fbx.objects.FBXProperty;
+import com.jumi.scene.JUMITextureBlobTable;
+import com.jumi.scene.objects.JUMITextureBlob;
+import java.nio.ByteBuffer;
 
 /**
  * FBXMediaDefinition
@@ -29,32 +34,54 @@ import com.jumi.fbx.objects.FBXProperty;
  */
 public class FBXMediaDefinition extends FBXObjectDefinition {
 
-    byte[] content = new byte[0];
+    // A read-only view of the embedded file, straight out of the FBX data where possible
+    ByteBuffer content = null;
+    // Hashed while parsing, so it runs alongside everything else when parsing in parallel
+    long contentHash = 0;
+    JUMITextureBlob contentBlob = null;
 
     public FBXMediaDefinition(long inUID, String inName) {
-        super(inUID, inName);
+        super(TYPE_MEDIA, inUID, inName);
     }
     
     public FBXMediaDefinition(long inUID) {
-        super(inUID);
+        super(TYPE_MEDIA, inUID);
     }
 
-    public void readNestedObject(String nestedName, FBXProperty[] properties) {
-        if (nestedName.equals("Content")) {
+    // Only the embedded content is read
+    private static final boolean[] CONSUMED_NODES = nodeIDs(FBXNames.CONTENT);
+
+    @Override
+    protected boolean[] getConsumedNodes() {
+        return CONSUMED_NODES;
+    }
+
+    public void readNestedObject(int nestedID, FBXProperty[] properties) {
+        if (nestedID == FBXNames.CONTENT) {
             if (properties.length > 0) {
-                content = properties[0].asByteArray();
+                content = properties[0].asByteBuffer();
+                contentHash = XXHash64.hash(content);
             }
         }
     }
     
+    /** Swap the content for the shared blob holding the same bytes, adding it to the table if it's the first */
+    public void shareContent(JUMITextureBlobTable table) {
+        if (content != null && content.hasRemaining()) {
+            contentBlob = table.add(content, contentHash);
+            content = contentBlob.getData();
+        }
+    }
+    
     public void readEmbeddedProperty(FBXProperty[] properties) {
         
     }
 
     @Override
     public void connect(FBXTextureDefinition inTexture) {
-        if (content != null && content.length > 0) {
+        if (content != null && content.hasRemaining()) {
             inTexture.textureData = content;
+            inTexture.textureBlob = contentBlob;
         }
     }
 }
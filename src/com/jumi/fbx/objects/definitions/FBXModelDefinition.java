@@ -18,6 +18,7 @@
  */
 package com.jumi.fbx.objects.definitions;
 
+import com.jumi.fbx.FBXNames;
 import com.jumi.scene.objects.JUMIMaterial;
 import com.jumi.scene.objects.JUMIMesh;
 import com.jumi.scene.objects.JUMIMesh.FaceType;
@@ -57,59 +58,106 @@ public class FBXModelDefinition extends FBXObjectDefinition {
     
     public FBXModelDefinition parent = null;
 
+    // Geometry is kept undecoded until a mesh is built from it, so models that never become meshes cost nothing
+    private FBXProperty[] vertexData = null;
+    private FBXProperty[] normalData = null;
+    private FBXProperty[] indexData = null;
+    private FBXProperty[] uvData = null;
+    private FBXProperty[] uvIndexData = null;
+
     public FBXModelDefinition(long inUID, String inName) {
-        super(inUID, inName);
+        super(TYPE_MODEL, inUID, inName);
     }
     
     public FBXModelDefinition(long inUID) {
-        super(inUID);
+        super(TYPE_MODEL, inUID);
     }
     
     public boolean isRoot() {
         return (parent == null);
     }
 
-    public void readNestedObject(String nestedName, FBXProperty[] properties) {
-        switch (nestedName) {
+    // Geometry, normals and UVs, including the layers the normals and UVs are nested in. Everything else (smoothing, visibility, colours...) is skipped
+    private static final boolean[] CONSUMED_NODES = nodeIDs(FBXNames.VERTICES, FBXNames.POLYGON_VERTEX_INDEX, FBXNames.LAYER_ELEMENT_NORMAL, FBXNames.NORMALS, FBXNames.LAYER_ELEMENT_UV, FBXNames.UV, FBXNames.UV_INDEX);
+
+    @Override
+    protected boolean[] getConsumedNodes() {
+        return CONSUMED_NODES;
+    }
+
+    public void readNestedObject(int nestedID, FBXProperty[] properties) {
+        if (properties.length == 0) {
+            return;
+        }
+        
+        switch (nestedID) {
+            case FBXNames.VERTICES:
+                vertexData = properties; break;
+            case FBXNames.NORMALS:
+                normalData = properties; break;
+            case FBXNames.POLYGON_VERTEX_INDEX:
+                indexData = properties; break;
+            case FBXNames.UV:
+                uvData = properties; break;
+            case FBXNames.UV_INDEX:
+                uvIndexData = properties; break;
+            default: break;
+        }
+    }
+    
+    /** Decode any geometry that was read from the file but hasn't been decoded yet */
+    public void decodeGeometry() {
+        if (vertexData != null) {
+            decodeNestedObject(FBXNames.VERTICES, vertexData);
+            vertexData = null;
+        }
+        if (normalData != null) {
+            decodeNestedObject(FBXNames.NORMALS, normalData);
+            normalData = null;
+        }
+        if (indexData != null) {
+            decodeNestedObject(FBXNames.POLYGON_VERTEX_INDEX, indexData);
+            indexData = null;
+        }
+        if (uvData != null) {
+            decodeNestedObject(FBXNames.UV, uvData);
+            uvData = null;
+        }
+        if (uvIndexData != null) {
+            decodeNestedObject(FBXNames.UV_INDEX, uvIndexData);
+            uvIndexData = null;
+        }
+    }
+
+    private void decodeNestedObject(int nestedID, FBXProperty[] properties) {
+        switch (nestedID) {
             // Vertex information
-            case "Vertices":
+            case FBXNames.VERTICES:
                 // Just to make life difficult, some models express vertices as a single array of doubles (correct),
                 // and some express them as a load of individual double primitives (BAD!). Should provide support for both I guess
-                if (properties[0].typeCode == 'd') {
-                    vertices = properties[0].asFloatArray();
-                } else if (properties[0].typeCode == 'D') {
-                    vertices = new float[properties.length];
-                    for (int i = 0; i < properties.length; i++) {
-                        vertices[i] = (float) properties[i].asDouble();
-                    }
+                float[] decodedVertices = FBXProperty.toFloatArray(properties);
+                if (decodedVertices != null) {
+                    vertices = decodedVertices;
                 } else {
                     // Vertices should be either a tonne of individual double values or an array of doubles. Anything else just ain't right
-                    System.err.println("Invalid vertex data type! Expected: double or array of doubles, actual: " + properties[0].dataType);
+                    System.err.println("Invalid vertex data type! Expected: float, double or an array of either, actual: " + properties[0].dataType);
                 }   break;
-            case "Normals":
+            case FBXNames.NORMALS:
                 // Same as vertices, normals can either be an array or lots of single doubles
-                if (properties[0].typeCode == 'd') {
-                    normals = properties[0].asFloatArray();
-                } else if (properties[0].typeCode == 'D') {
-                    normals = new float[properties.length];
-                    for (int i = 0; i < properties.length; i++) {
-                        normals[i] = (float) properties[i].asDouble();
-                    }
+                float[] decodedNormals = FBXProperty.toFloatArray(properties);
+                if (decodedNormals != null) {
+                    normals = decodedNormals;
                 } else {
-                    System.err.println("Invalid normal data type! Expected: double or array of doubles, actual: " + properties[0].dataType);
+                    System.err.println("Invalid normal data type! Expected: float, double or an array of either, actual: " + properties[0].dataType);
                 }   break;
             // Indices
-            case "PolygonVertexIndex":
+            case FBXNames.POLYGON_VERTEX_INDEX:
                 // Same as vertices, indices can either be an array or lots of single integers
-                if (properties[0].typeCode == 'i' || properties[0].typeCode == 'f') {
-                    indices = properties[0].asIntArray();
-                } else if (properties[0].typeCode == 'I' || properties[0].typeCode == 'F') {
-                    indices = new int[properties.length];
-                    for (int i = 0; i < properties.length; i++) {
-                        indices[i] = properties[i].asInteger();
-                    }
+                int[] decodedIndices = FBXProperty.toIntArray(properties);
+                if (decodedIndices != null) {
+                    indices = decodedIndices;
                 } else {
-                    System.err.println("Invalid indices data type! Expected: integer or array of integers, actual: " + properties[0].dataType);
+                    System.err.println("Invalid indices data type! Expected: integer, float or an array of either, actual: " + properties[0].dataType);
                 }   int faceSize = 0;
                 for (int i = 0; i < indices.length; i++) {
                     if (indices[i] < 0) {
@@ -126,30 +174,22 @@ public class FBXModelDefinition extends FBXObjectDefinition {
                     faceType = JUMIMesh.FaceType.QUADS;
                 }   break;
                 // TODO: Add something in case we're dealing with polygons or some other rubbish
-            case "UV":
+            case FBXNames.UV:
                 // See my comments for vertices/normals
-                if (properties[0].typeCode == 'd') {
-                    uvs = properties[0].asFloatArray();
-                } else if (properties[0].typeCode == 'D') {
-                    uvs = new float[properties.length];
-                    for (int i = 0; i < properties.length; i++) {
-                        uvs[i] = (float) properties[i].asDouble();
-                    }
+                float[] decodedUVs = FBXProperty.toFloatArray(properties);
+                if (decodedUVs != null) {
+                    uvs = decodedUVs;
                 } else {
-                    System.err.println("Invalid UV data type! Expected: double or array of doubles, actual: " + properties[0].dataType);
+                    System.err.println("Invalid UV data type! Expected: float, double or an array of either, actual: " + properties[0].dataType);
                 }   break;
-            case "UVIndex":
+            case FBXNames.UV_INDEX:
                 // See my comments for vertices/normals
-                if (properties[0].typeCode == 'i' || properties[0].typeCode == 'f') {
-                    UVIndices = properties[0].asIntArray();
-                } else if (properties[0].typeCode == 'I' || properties[0].typeCode == 'F') {
-                    UVIndices = new int[properties.length];
-                    for (int i = 0; i < properties.length; i++) {
-                        UVIndices[i] = properties[i].asInteger();
-                }
-            } else {
-                System.err.println("Invalid UV indices data type! Expected: integer or array of integers, actual: " + properties[0].dataType);
-            }   break;
+                int[] decodedUVIndices = FBXProperty.toIntArray(properties);
+                if (decodedUVIndices != null) {
+                    UVIndices = decodedUVIndices;
+                } else {
+                    System.err.println("Invalid UV indices data type! Expected: integer, float or an array of either, actual: " + properties[0].dataType);
+                }   break;
         }
     }
     
@@ -167,7 +207,7 @@ public class FBXModelDefinition extends FBXObjectDefinition {
     }
 
     public boolean hasGeometry() {
-        return (vertices != null && vertices.length > 0);
+        return (vertexData != null) || (vertices != null && vertices.length > 0);
     }
     
     public void addMaterialDefinition(FBXMaterialDefinition newMat) {
@@ -271,6 +311,8 @@ public class FBXModelDefinition extends FBXObjectDefinition {
         FBXModelDefinition meshData = findMeshData();
         FBXLimbNodeDefinition rootNode = findRootNode();
         
+        meshData.decodeGeometry();
+        
         result.vertices = meshData.vertices;
         result.normals = meshData.normals;
         result.binormals = meshData.binormals;
@@ -18,25 +18,49 @@
  */
 package com.jumi.fbx.objects.definitions;
 
+import com.jumi.fbx.FBXBuffer;
+import com.jumi.fbx.FBXNames;
+import com.jumi.fbx.FBXReader;
+import com.jumi.fbx.FBXVisitor;
 import com.jumi.fbx.objects.FBXProperty;
-import com.jumi.fbx.node.FBXNode;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 /**
  * FBXObjectDefinition
  * 
  * Base class for all object definitions. Contains hooks for connecting them to each other and for parsing data.
+ * Connections are dispatched on the type IDs of both objects through FBXConnectionTable.
+ * Each definition declares the nested nodes it reads, and anything else is skipped whole using its end offset.
  * Please note this is still in a rough shape, but it seems to work which is always useful.
  * 
  * @author Richard Greenlees
  */
-public abstract class FBXObjectDefinition {
+public abstract class FBXObjectDefinition implements FBXVisitor {
+    
+    // Type IDs, one per definition class. Used to index the connection table
+    public static final int TYPE_MODEL = 0;
+    public static final int TYPE_TEXTURE = 1;
+    public static final int TYPE_MATERIAL = 2;
+    public static final int TYPE_MEDIA = 3;
+    public static final int TYPE_LIMB_NODE = 4;
+    public static final int TYPE_SKIN_DEFORMER = 5;
+    public static final int TYPE_CAMERA = 6;
+    public static final int TYPE_SHAPE = 7;
+    public static final int TYPE_CLUSTER = 8;
+    public static final int TYPE_ANIM_CURVE = 9;
+    public static final int TYPE_ANIM_CURVE_NODE = 10;
+    public static final int TYPE_ANIM_LAYER = 11;
+    public static final int TYPE_ANIM_STACK = 12;
+    public static final int TYPE_COUNT = 13;
+    
+    public final int typeID;
     public long UID;
     public String name;
-    public int endOffset;
+    // Where the nodes nested in this definition's node start and end, once it's been parsed
+    public long startOffset;
+    public long endOffset;
     
-    public FBXObjectDefinition(long inUID, String inName) {       
+    public FBXObjectDefinition(int inTypeID, long inUID, String inName) {       
+        typeID = inTypeID;
         UID = inUID;
         if (inName.equals("")) {
             name = "NULL";
@@ -45,7 +69,8 @@ public abstract class FBXObjectDefinition {
         }
     }
     
-    public FBXObjectDefinition(long inUID) {
+    public FBXObjectDefinition(int inTypeID, long inUID) {
+        typeID = inTypeID;
         UID = inUID;
         name = "NULL";
     }
@@ -54,70 +79,53 @@ public abstract class FBXObjectDefinition {
         name = newName;
     }
     
-    public final void parseData(byte[] inputData, int startPosition) {
-        endOffset = startPosition;
+    /** Parse everything nested in this definition's node, from just after its properties to the end of the node */
+    public final void parseData(FBXBuffer inputData, long startPosition, long endPosition) {
+        new FBXReader(inputData).readChildren(this, startPosition, endPosition);
+        startOffset = startPosition;
+        endOffset = endPosition;
+    }
+    
+    /** Hand a nested node to the right hook. Nodes this definition doesn't consume are skipped along with everything inside them */
+    @Override
+    public final boolean beginNode(int nestedID, String nestedName, FBXProperty[] properties) {
+        if (!consumesNode(nestedID)) {
+            return false;
+        }
         
-        byte scope = 1;
+        // "P" or "Property" means we're inside a Properties60 or Properties70 node, so it's an embedded property
+        if (nestedID == FBXNames.P || nestedID == FBXNames.PROPERTY) {
+            readEmbeddedProperty(properties);
+        } else {
+            readNestedObject(nestedID, properties);
+        }
+        return true;
+    }
+    
+    @Override
+    public final void endNode() {
         
-        while (scope > 0) {
-            int nestedNameLength = inputData[endOffset + 12];
-            byte[] nestedNameData = FBXNode.retrieveBytesFrom(inputData, nestedNameLength, endOffset + 13);
-            String nestedName = new String(nestedNameData);
-            
-            byte[] numPropertiesData = FBXNode.retrieveBytesFrom(inputData, 4, endOffset + 4);
-
-            int numProperties = ByteBuffer.wrap(numPropertiesData).order(ByteOrder.LITTLE_ENDIAN).getInt();
-
-            endOffset += nestedNameLength + 13;
-            
-            if (nestedName.equals("")) {
-                scope--;
-                if (scope <= 0) {
-                    break;
-                }
-            } else {
-                
-                // TODO: Figure out a better way of deciding which nested nodes contain MORE nested nodes.
-                // Tracking the size of each nested element vs. its properties doesn't seem to be reliable
-                if (nestedName.equals("Properties60")
-                        || nestedName.equals("Properties70")
-                        || nestedName.equals("LayerElementUV")
-                        || nestedName.equals("LayerElementMaterial")
-                        || nestedName.equals("LayerElementTexture")
-                        || nestedName.equals("Layer")
-                        || nestedName.equals("LayerElement")
-                        || nestedName.equals("LayerElementBinormal")
-                        || nestedName.equals("LayerElementNormal")
-                        || nestedName.equals("LayerElementTangent")
-                        || nestedName.equals("LayerElementSmoothing")
-                        || nestedName.equals("LayerElementColor")
-                        || nestedName.equals("LayerElementVisibility")) {
-                    scope++;
-                }
-
-            }
-            
-            FBXProperty[] properties = new FBXProperty[numProperties];
-            
-            // Get all the properties this nested item contains
-            for (int i = 0; i < properties.length; i++) {
-                FBXProperty newProp = new FBXProperty(inputData, endOffset);
-                endOffset += newProp.dataLength;
-                properties[i] = newProp;
-            }
-            
-            // "P" or "Property" means we're inside a Properties60 or Properties70 node, so it's an embedded property
-            if (nestedName.equals("P") || nestedName.equals("Property")) {
-                readEmbeddedProperty(properties);
-            } else {
-                readNestedObject(nestedName, properties);
-            }
-            
+    }
+    
+    /** Does this definition read the nested node with the supplied FBXNames ID, or anything inside it? */
+    public final boolean consumesNode(int nestedID) {
+        return getConsumedNodes()[nestedID];
+    }
+    
+    /** The nested nodes this definition reads, including any nodes they're nested inside, indexed by FBXNames ID */
+    protected abstract boolean[] getConsumedNodes();
+    
+    /** Build the table returned by getConsumedNodes from a list of FBXNames IDs */
+    protected static boolean[] nodeIDs(int... ids) {
+        boolean[] result = new boolean[FBXNames.COUNT];
+        for (int id : ids) {
+            result[id] = true;
         }
+        return result;
     }
     
     /** Called every time a new nested node is parsed */
-    protected abstract void readNestedObject(String nestedName, FBXProperty[] properties);
+    protected abstract void readNestedObject(int nestedID, FBXProperty[] properties);
     
     /** Called whenever an embedded property (via Properties60 or Properties70) is encountered */
     protected abstract void readEmbeddedProperty(FBXProperty[] properties);
@@ -174,34 +182,12 @@ public abstract class FBXObjectDefinition {
         
     }
     
-    // TODO: Sort this mess out. Quick hack until I'm happy with how everything connects up and put a proper process together
-    public void connect(FBXObjectDefinition inObject) {
-        if (inObject instanceof FBXModelDefinition) {
-            connect((FBXModelDefinition) inObject);
-        } else if (inObject instanceof FBXTextureDefinition) {
-            connect((FBXTextureDefinition) inObject);
-        } else if (inObject instanceof FBXMediaDefinition) {
-            connect((FBXMediaDefinition) inObject);
-        } else if (inObject instanceof FBXMaterialDefinition) {
-            connect((FBXMaterialDefinition) inObject);
-        } else if (inObject instanceof FBXLimbNodeDefinition) {
-            connect((FBXLimbNodeDefinition) inObject);
-        } else if (inObject instanceof FBXSkinDeformerDefinition) {
-            connect((FBXSkinDeformerDefinition) inObject);
-        } else if (inObject instanceof FBXCameraDefinition) {
-            connect((FBXCameraDefinition) inObject);
-        } else if (inObject instanceof FBXShapeDefinition) {
-            connect((FBXShapeDefinition) inObject);
-        } else if (inObject instanceof FBXClusterDefinition) {
-            connect((FBXClusterDefinition) inObject);
-        } else if (inObject instanceof FBXAnimCurveDefinition) {
-            connect((FBXAnimCurveDefinition) inObject);
-        } else if (inObject instanceof FBXAnimCurveNodeDefinition) {
-            connect((FBXAnimCurveNodeDefinition) inObject);
-        } else if (inObject instanceof FBXAnimLayerDefinition) {
-            connect((FBXAnimLayerDefinition) inObject);
-        } else if (inObject instanceof FBXAnimStackDefinition) {
-            connect((FBXAnimStackDefinition) inObject);
+    /** Connect this object to inObject, using the handler registered for the pair of types. Pairs which don't
+     * mean anything to JUMI have no handler and are skipped */
+    public final void connect(FBXObjectDefinition inObject) {
+        FBXConnector connector = FBXConnectionTable.CONNECTORS[typeID][inObject.typeID];
+        if (connector != null) {
+            connector.connect(this, inObject);
         }
     }
     
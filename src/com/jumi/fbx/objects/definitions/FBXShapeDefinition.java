@@ -18,6 +18,7 @@
  */
 package com.jumi.fbx.objects.definitions;
 
+import com.jumi.fbx.FBXNames;
 import com.jumi.fbx.objects.FBXProperty;
 
 /**
@@ -30,15 +31,23 @@ import com.jumi.fbx.objects.FBXProperty;
 public class FBXShapeDefinition extends FBXObjectDefinition {
 
     public FBXShapeDefinition(long inUID, String inName) {
-        super(inUID, inName);
+        super(TYPE_SHAPE, inUID, inName);
     }
     
     public FBXShapeDefinition(long inUID) {
-        super(inUID);
+        super(TYPE_SHAPE, inUID);
     }
     
+    // Nothing nested is read yet
+    private static final boolean[] CONSUMED_NODES = nodeIDs();
+
+    @Override
+    protected boolean[] getConsumedNodes() {
+        return CONSUMED_NODES;
+    }
+
     @Override
-    public void readNestedObject(String nestedName, FBXProperty[] properties) {
+    public void readNestedObject(int nestedID, FBXProperty[] properties) {
         
     }
 
@@ -18,6 +18,7 @@
  */
 package com.jumi.fbx.objects.definitions;
 
+import com.jumi.fbx.FBXNames;
 import com.jumi.scene.objects.JUMISkinDeformer;
 import com.jumi.scene.objects.JUMISubDeformer;
 import com.jumi.fbx.objects.FBXProperty;
@@ -37,16 +38,24 @@ public class FBXSkinDeformerDefinition extends FBXObjectDefinition {
     public ArrayList<FBXClusterDefinition> clusters = new ArrayList();
 
     public FBXSkinDeformerDefinition(long inUID, String inName) {
-        super(inUID, inName);
+        super(TYPE_SKIN_DEFORMER, inUID, inName);
     }
 
     public FBXSkinDeformerDefinition(long inUID) {
-        super(inUID);
+        super(TYPE_SKIN_DEFORMER, inUID);
+    }
+
+    // Only the deform accuracy is read
+    private static final boolean[] CONSUMED_NODES = nodeIDs(FBXNames.LINK_DEFORM_ACURACY);
+
+    @Override
+    protected boolean[] getConsumedNodes() {
+        return CONSUMED_NODES;
     }
 
     @Override
-    public void readNestedObject(String nestedName, FBXProperty[] properties) {
-        if (nestedName.equals("Link_DeformAcuracy")) {
+    public void readNestedObject(int nestedID, FBXProperty[] properties) {
+        if (nestedID == FBXNames.LINK_DEFORM_ACURACY) {
             linkDeformAccuracy = properties[0].asLong();
         }
     }
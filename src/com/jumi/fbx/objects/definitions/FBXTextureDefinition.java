@@ -18,8 +18,11 @@
  */
 package com.jumi.fbx.objects.definitions;
 
+import com.jumi.fbx.FBXNames;
 import com.jumi.scene.objects.JUMITexture;
+import com.jumi.scene.objects.JUMITextureBlob;
 import com.jumi.fbx.objects.FBXProperty;
+import java.nio.ByteBuffer;
 
 /**
  * FBXTextureDefinition
@@ -37,26 +40,35 @@ public class FBXTextureDefinition extends FBXObjectDefinition {
     public String fileName = "";
     public String relativeFilename = "";
 
-    public byte[] textureData = new byte[0];
+    public ByteBuffer textureData = null;
+    public JUMITextureBlob textureBlob = null;
     
     public FBXObjectDefinition parent = null;
 
     public FBXTextureDefinition(long inUID, String inName) {
-        super(inUID, inName);
+        super(TYPE_TEXTURE, inUID, inName);
     }
     
     public FBXTextureDefinition(long inUID) {
-        super(inUID);
+        super(TYPE_TEXTURE, inUID);
     }
 
-    public void readNestedObject(String nestedName, FBXProperty[] properties) {
-        if (nestedName.equals("Type")) {
+    // Only the file details are read
+    private static final boolean[] CONSUMED_NODES = nodeIDs(FBXNames.TYPE, FBXNames.TEXTURE_NAME, FBXNames.FILE_NAME, FBXNames.RELATIVE_FILENAME);
+
+    @Override
+    protected boolean[] getConsumedNodes() {
+        return CONSUMED_NODES;
+    }
+
+    public void readNestedObject(int nestedID, FBXProperty[] properties) {
+        if (nestedID == FBXNames.TYPE) {
             mediaType = properties[0].asString();
-        } else if (nestedName.equals("TextureName")) {
+        } else if (nestedID == FBXNames.TEXTURE_NAME) {
             textureName = properties[0].asString().substring(0, properties[0].asString().indexOf('\0'));
-        } else if (nestedName.equals("FileName")) {
+        } else if (nestedID == FBXNames.FILE_NAME) {
             fileName = properties[0].asString();
-        } else if (nestedName.equals("RelativeFilename")) {
+        } else if (nestedID == FBXNames.RELATIVE_FILENAME) {
             relativeFilename = properties[0].asString();
         }        
     }
@@ -71,7 +83,11 @@ public class FBXTextureDefinition extends FBXObjectDefinition {
         result.fullFilePath = fileName;
         result.relativeFilename = relativeFilename;
         result.fileName = fileName.substring(fileName.lastIndexOf("\\") + 1, fileName.length());
-        result.setTextureData(textureData);
+        if (textureBlob != null) {
+            result.setTextureBlob(textureBlob);
+        } else if (textureData != null) {
+            result.setTextureData(textureData);
+        }
         return result;
     }
 
@@ -98,8 +114,9 @@ public class FBXTextureDefinition extends FBXObjectDefinition {
 
     @Override
     public void connect(FBXMediaDefinition inMedia) {
-        if (inMedia.content != null && inMedia.content.length > 0) {
+        if (inMedia.content != null && inMedia.content.hasRemaining()) {
             textureData = inMedia.content;
+            textureBlob = inMedia.contentBlob;
         }
         parent = inMedia;
     }
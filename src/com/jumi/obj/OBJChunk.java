@@ -0,0 +1,239 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.obj;
+
+import com.jumi.data.FloatList;
+import com.jumi.data.IntList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * OBJChunk
+ * 
+ * A run of whole lines from an OBJ file, scanned independently of the rest. Vertices, normals and UVs are kept as
+ * they are read. Faces, and the object, group and material changes between them, are recorded in file order so
+ * they can be replayed once every chunk before this one is known. Negative indices can't be resolved until then,
+ * so faces using them also record how many of each the chunk had seen so far.
+ * 
+ * @author Richard Greenlees
+ */
+class OBJChunk {
+
+    // Record types. A face is followed by its corner count, whether it's relative, the chunk's vertex, UV and normal
+    // counts if it is, then its corners. Everything else is followed by a single value
+    static final int FACE = 0;
+    static final int INVALID_FACE = 1;
+    static final int MODEL_CONTEXT = 2;
+    static final int USE_MATERIAL = 3;
+    static final int MATERIAL_LIBRARY = 4;
+
+    // Smaller chunks aren't worth a task of their own
+    private static final long MIN_CHUNK_SIZE = 4 << 20;
+    // A few chunks per core, so one slow chunk doesn't hold everything up
+    private static final int CHUNKS_PER_CORE = 4;
+
+    final long start;
+    final long end;
+    private final boolean importNormals;
+    private final boolean importUVs;
+
+    // Released by the loader as soon as it has merged them
+    FloatList vertices = new FloatList();
+    FloatList normals = new FloatList();
+    FloatList uvs = new FloatList();
+    IntList records = new IntList();
+    // Object, group, material and library names, referred to from the records by index
+    private final ArrayList<String> names = new ArrayList();
+    // Set if the chunk couldn't be read when parsed on the pool
+    IOException failure = null;
+
+    OBJChunk(long inStart, long inEnd, boolean inImportNormals, boolean inImportUVs) {
+        start = inStart;
+        end = inEnd;
+        importNormals = inImportNormals;
+        importUVs = inImportUVs;
+    }
+
+    /* Split a file into chunks of roughly equal size, each starting at the beginning of a line */
+    static OBJChunk[] split(FileChannel channel, boolean importNormals, boolean importUVs) throws IOException {
+        int chunkCount = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * CHUNKS_PER_CORE, channel.size() / MIN_CHUNK_SIZE));
+        return split(channel, chunkCount, importNormals, importUVs);
+    }
+
+    /* Split a file into the given number of chunks. A chunk is left empty if a line is longer than the chunks are */
+    static OBJChunk[] split(FileChannel channel, int chunkCount, boolean importNormals, boolean importUVs) throws IOException {
+        long size = channel.size();
+        OBJChunk[] chunks = new OBJChunk[chunkCount];
+        long chunkStart = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            long chunkEnd = (i == chunkCount - 1) ? size : Math.max(chunkStart, findLineStart(channel, size * (i + 1) / chunkCount, size));
+            chunks[i] = new OBJChunk(chunkStart, chunkEnd, importNormals, importUVs);
+            chunkStart = chunkEnd;
+        }
+
+        return chunks;
+    }
+
+    /* The offset of the first line starting at or after position */
+    private static long findLineStart(FileChannel channel, long position, long size) throws IOException {
+        // Start one byte back, in case position is already the start of a line
+        long offset = Math.max(0, position - 1);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+
+        return size;
+    }
+
+    String getName(int index) {
+        return (index < 0) ? null : names.get(index);
+    }
+
+    private void addName(int recordType, String name) {
+        records.add(recordType);
+        if (name == null) {
+            records.add(-1);
+        } else {
+            records.add(names.size());
+            names.add(name);
+        }
+    }
+
+    /* Scan every line of the chunk */
+    void parse(FileChannel channel) throws IOException {
+        // The channel is shared with the other chunks, so the reader isn't closed here
+        new OBJReader(new OBJScanner(channel, start, end), false).accept(new RecordVisitor());
+    }
+
+    /* Keeps the chunk's vertices, UVs and normals, and records everything else for the loader to replay */
+    private class RecordVisitor implements OBJVisitor {
+
+        @Override
+        public void vertex(float x, float y, float z) {
+            vertices.add(x, y, z);
+        }
+
+        @Override
+        public void uv(float u, float v) {
+            if (importUVs) {
+                uvs.add(u, v);
+            }
+        }
+
+        @Override
+        public void normal(float x, float y, float z) {
+            if (importNormals) {
+                normals.add(x, y, z);
+            }
+        }
+
+        @Override
+        public void face(int[] v, int[] vt, int[] vn) {
+            int cornerCount = v.length;
+            if (cornerCount > 4 || cornerCount < 3) {
+                records.add(INVALID_FACE, cornerCount);
+                return;
+            }
+
+            OBJLoader.dropUnimported(vt, vn, importUVs, importNormals);
+
+            boolean relative = false;
+            for (int i = 0; i < cornerCount; i++) {
+                relative |= (v[i] < 0 || vt[i] < 0 || vn[i] < 0);
+            }
+
+            records.add(FACE, cornerCount, relative ? 1 : 0);
+            if (relative) {
+                records.add(vertices.size() / 3, uvs.size() / 2, normals.size() / 3);
+            }
+            for (int i = 0; i < cornerCount; i++) {
+                records.add(v[i], vt[i], vn[i]);
+            }
+        }
+
+        @Override
+        public void object(String name) {
+            addName(MODEL_CONTEXT, name);
+        }
+
+        @Override
+        public void group(String name) {
+            addName(MODEL_CONTEXT, name);
+        }
+
+        @Override
+        public void useMaterial(String name) {
+            addName(USE_MATERIAL, name);
+        }
+
+        @Override
+        public void materialLibrary(String fileName) {
+            addName(MATERIAL_LIBRARY, fileName);
+        }
+    }
+
+    /* Parses a range of chunks, splitting the range across the pool until there's one chunk each */
+    static class ParseTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final OBJChunk[] chunks;
+        private final int first;
+        private final int last;
+
+        ParseTask(FileChannel inChannel, OBJChunk[] inChunks, int inFirst, int inLast) {
+            channel = inChannel;
+            chunks = inChunks;
+            first = inFirst;
+            last = inLast;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first == 1) {
+                try {
+                    chunks[first].parse(channel);
+                } catch (IOException e) {
+                    // Checked exceptions can't leave compute, so the loader picks this up once every chunk is done
+                    chunks[first].failure = e;
+                }
+            } else {
+                int middle = (first + last) >>> 1;
+                invokeAll(new ParseTask(channel, chunks, first, middle), new ParseTask(channel, chunks, middle, last));
+            }
+        }
+    }
+}
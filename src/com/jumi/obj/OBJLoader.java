@@ -18,18 +18,21 @@
  */
 package com.jumi.obj;
 
+import com.jumi.JUMIImportOptions;
 import com.jumi.JUMILoader;
-import com.jumi.data.Vector2;
-import com.jumi.data.Vector3;
+import com.jumi.data.FloatList;
+import com.jumi.data.IntList;
 import com.jumi.obj.objects.definitions.OBJMatLibDefinition;
 import com.jumi.obj.objects.definitions.OBJModelDefinition;
 import com.jumi.scene.JUMIScene;
 import com.jumi.scene.objects.JUMIMesh;
-import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  *
@@ -37,180 +40,281 @@ import java.util.ArrayList;
  */
 public class OBJLoader extends JUMILoader {
 
+    // One more than a quad, so that anything bigger can be recognised
+    static final int MAX_FACE_CORNERS = 5;
+
     public static JUMIScene importModel(String fileName) throws IOException {
-        ArrayList<Vector3> vertices = new ArrayList();
-        ArrayList<Vector3> normals = new ArrayList();
-        ArrayList<Vector2> uvs = new ArrayList();
-        ArrayList<OBJModelDefinition> modelContexts = new ArrayList();
+        return importModel(fileName, new JUMIImportOptions());
+    }
 
-        OBJMatLibDefinition materialLibrary = null;
+    /** Import an OBJ file, skipping anything the options don't want as it's parsed */
+    public static JUMIScene importModel(String fileName, JUMIImportOptions options) throws IOException {
+        if (options.parallelParsing) {
+            return importModelInChunks(fileName, options, 0);
+        }
+
+        SceneVisitor scene = new SceneVisitor(fileName, options);
+        OBJReader reader = null;
+
+        try {
+            reader = OBJReader.open(fileName);
+            reader.accept(scene);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (reader != null) {
+                // Don't forget to close the file!
+                reader.close();
+            }
+        }
 
-        BufferedReader reader = null;
+        return createScene(scene.modelContexts, scene.vertices, scene.normals, scene.uvs);
+    }
 
-        OBJModelDefinition defaultModel = new OBJModelDefinition("default");
-        modelContexts.add(defaultModel);
-        OBJModelDefinition currentModelContext = defaultModel;
+    /* Import an OBJ file by splitting it into chunks at line breaks and scanning them side by side. Each chunk keeps
+     * its own vertices, and its faces and object/group/material changes in file order. The chunks are then merged in
+     * order, offsetting each one's negative indices by the number of vertices, UVs and normals in the chunks before it.
+     * A chunkCount of 0 picks one from the file size and the number of cores */
+    static JUMIScene importModelInChunks(String fileName, JUMIImportOptions options, int chunkCount) throws IOException {
+        FileChannel channel = null;
+        OBJChunk[] chunks;
 
         try {
-            reader = new BufferedReader(new FileReader(fileName));
-            String line;
+            channel = new RandomAccessFile(fileName, "r").getChannel();
 
-            while ((line = reader.readLine()) != null) {
-                // Split up the string by space or tab
-                String[] lineTokens = line.split("\\s+");
+            if (chunkCount > 0) {
+                chunks = OBJChunk.split(channel, chunkCount, options.importNormals(), options.importUVs());
+            } else {
+                chunks = OBJChunk.split(channel, options.importNormals(), options.importUVs());
+            }
 
-                // Obviously ignore blank lines
-                if (lineTokens.length == 0) {
-                    continue;
+            if (chunks.length > 1) {
+                ForkJoinPool pool = new ForkJoinPool();
+                try {
+                    pool.invoke(new OBJChunk.ParseTask(channel, chunks, 0, chunks.length));
+                } finally {
+                    pool.shutdown();
                 }
-                
-                // Make sure we remove leading/trailing white space!
-                switch (lineTokens[0].trim()) {
-                    case "mtllib": // Define our material library
-                        // Some OBJ files like to include hard-coded paths, let's get rid of that and get just the name of the file
-                        String libName = line.substring(line.indexOf(" ") + 1, line.length()).replace("\\", "/");
-
-                        if (libName.contains("/")) {
-                            libName = libName.substring(libName.lastIndexOf("/") + 1, libName.length());
-                        }
-                        
-                        // Look for our MTL file in the same folder as the OBJ file
-                        String libLocation = fileName.substring(0, fileName.lastIndexOf("/") + 1) + libName;
-                        try {
-                            // Create the material library and parse the MTL file separately
-                            materialLibrary = new OBJMatLibDefinition();
-                            materialLibrary.parseMTL(libLocation);
-                        } catch (FileNotFoundException e) {
-                            System.err.println("WARNING: Could not find requested material file " + libLocation);
-                        } catch (IOException e) {
-                            System.out.println("WARNING: Error while parsing requested material file " + libLocation);
+
+                for (OBJChunk chunk : chunks) {
+                    if (chunk.failure != null) {
+                        throw chunk.failure;
+                    }
+                }
+            } else {
+                for (OBJChunk chunk : chunks) {
+                    chunk.parse(channel);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+
+        FloatList vertices = new FloatList();
+        FloatList normals = new FloatList();
+        FloatList uvs = new FloatList();
+
+        ArrayList<OBJModelDefinition> modelContexts = new ArrayList();
+        OBJMatLibDefinition materialLibrary = null;
+
+        OBJModelDefinition currentModelContext = new OBJModelDefinition("default");
+        modelContexts.add(currentModelContext);
+        boolean importingContext = options.acceptsName(currentModelContext.name);
+
+        // The vertex, UV and normal index of each corner of the current face
+        int[] v = new int[MAX_FACE_CORNERS];
+        int[] vt = new int[MAX_FACE_CORNERS];
+        int[] vn = new int[MAX_FACE_CORNERS];
+
+        for (int c = 0; c < chunks.length; c++) {
+            OBJChunk chunk = chunks[c];
+            IntList records = chunk.records;
+
+            // Everything before this chunk, which its negative indices count back through
+            int vertexBase = vertices.size() / 3;
+            int uvBase = uvs.size() / 2;
+            int normalBase = normals.size() / 3;
+
+            // The merged pools grow as each chunk is copied in, and the chunk's own pools go straight away. Between them
+            // the merged pools and the chunks still to come hold the geometry once, rather than twice
+            vertices.addAll(chunk.vertices);
+            uvs.addAll(chunk.uvs);
+            normals.addAll(chunk.normals);
+            chunk.vertices = null;
+            chunk.uvs = null;
+            chunk.normals = null;
+
+            int i = 0;
+            while (i < records.size()) {
+                switch (records.get(i)) {
+                    case OBJChunk.FACE:
+                        int cornerCount = records.get(i + 1);
+                        boolean relative = records.get(i + 2) != 0;
+                        i += 3;
+
+                        // How many vertices, UVs and normals the chunk had seen when it read a face with negative indices
+                        int vertexCount = 0;
+                        int uvCount = 0;
+                        int normalCount = 0;
+                        if (relative) {
+                            vertexCount = vertexBase + records.get(i);
+                            uvCount = uvBase + records.get(i + 1);
+                            normalCount = normalBase + records.get(i + 2);
+                            i += 3;
                         }
-                        break;
-                    case "V":
-                    case "v":
-                        // OBJ indices refer to the vertices/UVs/normals as groups of 3, so let's do the same
-                        vertices.add(new Vector3(Float.valueOf(lineTokens[1]), Float.valueOf(lineTokens[2]), Float.valueOf(lineTokens[3])));
-                        break;
-                    case "VN":
-                    case "vn":
-                        // OBJ indices refer to the vertices/UVs/normals as groups of 3, so let's do the same
-                        normals.add(new Vector3(Float.valueOf(lineTokens[1]), Float.valueOf(lineTokens[2]), Float.valueOf(lineTokens[3])));
-                        break;
-                    case "VT":
-                    case "vt":
-                        // OBJ indices refer to the vertices/UVs/normals as groups of 3, so let's do the same
-                        uvs.add(new Vector2(Float.valueOf(lineTokens[1]), Float.valueOf(lineTokens[2])));
-                        break;
-                    case "F":
-                    case "f":
-                        // Only allow support for Triangles or Quads for now
-                        if (lineTokens.length > 5 || lineTokens.length < 4) {
-                            System.err.println("Invalid face definition! Expected 3 (Triangles) or 4 (Quads), actual = " + (lineTokens.length - 1));
-                        } else {
-                            // Some OBJ models use relative positions (negative indices). The aim here is to convert them to regular face definitions
-                            // First check if we have a negative index
-                            if (lineTokens[1].charAt(0) == '-') {
-                                for (int i = 1; i < lineTokens.length; i++) {
-                                    // Split the face definition, we're going to redefine each index
-                                    String[] lineToken = lineTokens[i].split("/");
-                                    
-                                    // Check that model has UVs and normals defined before converting them
-                                    int vIndex = Integer.valueOf(lineToken[0]);
-                                    int vtIndex = (lineToken.length > 1 && !lineToken[1].equals("")) ? Integer.valueOf(lineToken[1]) : 0;
-                                    int nIndex = (lineToken.length > 2 && !lineToken[2].equals("")) ? Integer.valueOf(lineToken[2]) : 0;
-                                    
-                                    // Convert each index as the current number of definitions - index. We use + as the index is negative
-                                    // Also add +1 as OBJ definitions go from 1...n while ArrayLists go 0...n
-                                    vIndex = vertices.size() + vIndex + 1;
-                                    vtIndex = (vtIndex < 0) ? (uvs.size() + vtIndex + 1) : 0;
-                                    nIndex = (nIndex < 0) ? (normals.size() + nIndex + 1) : 0;
-                                    
-                                    // Reconstruct the face definition so it can be processed as normal when constructing the mesh
-                                    lineTokens[i] = vIndex + "/" + ((vtIndex > 0) ? vtIndex : "") + "/" + ((nIndex > 0) ? nIndex : "");
-                                }
+
+                        // Negative indices count back from the last one defined. +1 as OBJ goes from 1...n
+                        for (int j = 0; j < cornerCount; j++) {
+                            v[j] = records.get(i++);
+                            vt[j] = records.get(i++);
+                            vn[j] = records.get(i++);
+
+                            if (v[j] < 0) {
+                                v[j] += vertexCount + 1;
+                            }
+                            if (vt[j] < 0) {
+                                vt[j] += uvCount + 1;
                             }
-                            
-                            // If we're dealing with a quad, triangulate it. Some models use a mix of triangles and quads, and it's easier
-                            // to just triangulate everything rather than try and switch back and forth
-                            if (lineTokens.length == 5) {
-
-                                currentModelContext.uniqueIndexDefinitions.add(lineTokens[1]);
-                                currentModelContext.uniqueIndexDefinitions.add(lineTokens[2]);
-                                currentModelContext.uniqueIndexDefinitions.add(lineTokens[3]);
-                                currentModelContext.uniqueIndexDefinitions.add(lineTokens[4]);
-
-                                currentModelContext.allIndexDefinitions.add(lineTokens[1]);
-                                currentModelContext.allIndexDefinitions.add(lineTokens[2]);
-                                currentModelContext.allIndexDefinitions.add(lineTokens[3]);
-                                currentModelContext.allIndexDefinitions.add(lineTokens[3]);
-                                currentModelContext.allIndexDefinitions.add(lineTokens[4]);
-                                currentModelContext.allIndexDefinitions.add(lineTokens[1]);
-                            } else {
-                                // Keep a separate list of unique index definitions and the actual defined indices. These will be used later
-                                // to create a final indices array
-                                for (int i = 1; i < lineTokens.length; i++) {
-                                    currentModelContext.uniqueIndexDefinitions.add(lineTokens[i]);
-                                    currentModelContext.allIndexDefinitions.add(lineTokens[i]);
-                                }
+                            if (vn[j] < 0) {
+                                vn[j] += normalCount + 1;
                             }
                         }
 
+                        if (importingContext) {
+                            addFace(currentModelContext, v, vt, vn, cornerCount);
+                        }
                         break;
-                    case "usemtl": // Use a material from the defined library
-                        // Only do stuff if we've already had a material library defined (via mtllib)
-                        if (materialLibrary != null && lineTokens.length > 1) {
-                            currentModelContext.materialDefinitions.add(materialLibrary.getMaterialDefinition(lineTokens[1]));
+                    case OBJChunk.INVALID_FACE:
+                        if (importingContext) {
+                            isSupportedFace(records.get(i + 1));
                         }
+                        i += 2;
                         break;
-                    case "O":
-                    case "o":
-                    case "G":
-                    case "g":
-                        // If the group or object has no name defined, give it a default one
-                        String modelContextName = "default";
-                        if (lineTokens.length > 1) {
-                            modelContextName = lineTokens[1];
+                    case OBJChunk.MATERIAL_LIBRARY:
+                        if (options.importMaterials()) {
+                            materialLibrary = loadMaterialLibrary(fileName, chunk.getName(records.get(i + 1)));
                         }
+                        i += 2;
+                        break;
+                    case OBJChunk.USE_MATERIAL:
+                        String materialName = chunk.getName(records.get(i + 1));
+                        if (materialLibrary != null && materialName != null) {
+                            currentModelContext.materialDefinitions.add(materialLibrary.getMaterialDefinition(materialName));
+                        }
+                        i += 2;
+                        break;
+                    case OBJChunk.MODEL_CONTEXT:
+                        currentModelContext = findModelContext(modelContexts, chunk.getName(records.get(i + 1)));
+                        importingContext = options.acceptsName(currentModelContext.name);
+                        i += 2;
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown OBJ chunk record " + records.get(i));
+                }
+            }
 
-                        // First check if we already have a model with that name defined, and use that instead
-                        OBJModelDefinition newContext = null;
+            // Done with it, so let it go before the meshes are built
+            chunk.records = null;
+            chunks[c] = null;
+        }
 
-                        for (OBJModelDefinition a : modelContexts) {
-                            if (a.name.equals(modelContextName)) {
-                                newContext = a;
-                                break;
-                            }
-                        }
+        return createScene(modelContexts, vertices, normals, uvs);
+    }
 
-                        // Otherwise, create a new model and use it
-                        if (newContext == null) {
-                            newContext = new OBJModelDefinition(modelContextName);
-                            modelContexts.add(newContext);
-                        }
+    /* Only allow support for Triangles or Quads for now */
+    private static boolean isSupportedFace(int cornerCount) {
+        if (cornerCount > 4 || cornerCount < 3) {
+            System.err.println("Invalid face definition! Expected 3 (Triangles) or 4 (Quads), actual = " + cornerCount);
+            return false;
+        }
+        return true;
+    }
 
-                        currentModelContext = newContext;
+    /* Add a triangle or quad to a model, once its indices have all been made positive */
+    private static void addFace(OBJModelDefinition model, int[] v, int[] vt, int[] vn, int cornerCount) {
+        // If we're dealing with a quad, triangulate it. Some models use a mix of triangles and quads, and it's easier
+        // to just triangulate everything rather than try and switch back and forth
+        if (cornerCount == 4) {
+            model.addCorner(v[0], vt[0], vn[0]);
+            model.addCorner(v[1], vt[1], vn[1]);
+            model.addCorner(v[2], vt[2], vn[2]);
+            model.addCorner(v[2], vt[2], vn[2]);
+            model.addCorner(v[3], vt[3], vn[3]);
+            model.addCorner(v[0], vt[0], vn[0]);
+        } else {
+            for (int i = 0; i < cornerCount; i++) {
+                model.addCorner(v[i], vt[i], vn[i]);
+            }
+        }
+    }
 
-                        break;
+    /* Indices of UVs and normals that aren't being imported are dropped, so vertices only differing by those are merged */
+    static void dropUnimported(int[] vt, int[] vn, boolean importUVs, boolean importNormals) {
+        if (!importUVs) {
+            Arrays.fill(vt, 0);
+        }
+        if (!importNormals) {
+            Arrays.fill(vn, 0);
+        }
+    }
 
-                }
+    /* Find the object or group with the supplied name, creating it if it's the first time it's been used */
+    private static OBJModelDefinition findModelContext(ArrayList<OBJModelDefinition> modelContexts, String modelContextName) {
+        // If the group or object has no name defined, give it a default one
+        if (modelContextName == null) {
+            modelContextName = "default";
+        }
+
+        // First check if we already have a model with that name defined, and use that instead
+        for (OBJModelDefinition a : modelContexts) {
+            if (a.name.equals(modelContextName)) {
+                return a;
             }
+        }
+
+        // Otherwise, create a new model and use it
+        OBJModelDefinition newContext = new OBJModelDefinition(modelContextName);
+        modelContexts.add(newContext);
+        return newContext;
+    }
+
+    private static OBJMatLibDefinition loadMaterialLibrary(String fileName, String libName) {
+        // Some OBJ files like to include hard-coded paths, let's get rid of that and get just the name of the file
+        libName = libName.replace("\\", "/");
+
+        if (libName.contains("/")) {
+            libName = libName.substring(libName.lastIndexOf("/") + 1, libName.length());
+        }
+
+        // Look for our MTL file in the same folder as the OBJ file
+        String libLocation = fileName.substring(0, fileName.lastIndexOf("/") + 1) + libName;
+
+        // Create the material library and parse the MTL file separately
+        OBJMatLibDefinition materialLibrary = new OBJMatLibDefinition();
+        try {
+            materialLibrary.parseMTL(libLocation);
+        } catch (FileNotFoundException e) {
+            System.err.println("WARNING: Could not find requested material file " + libLocation);
         } catch (IOException e) {
-            e.printStackTrace();
-            return null;
-        } finally {
-            if (reader != null) {
-                // Don't forget to close the reader!
-                reader.close();
-            }
+            System.out.println("WARNING: Error while parsing requested material file " + libLocation);
         }
+        return materialLibrary;
+    }
 
+    private static JUMIScene createScene(ArrayList<OBJModelDefinition> modelContexts, FloatList vertices, FloatList normals, FloatList uvs) {
         ArrayList<JUMIMesh> allMeshes = new ArrayList();
 
         JUMIScene result = new JUMIScene();
 
         // Gather all the models we have defined and turn them into JUMI Meshes for inclusion in the scene
         for (OBJModelDefinition a : modelContexts) {
-            if (a.allIndexDefinitions.size() > 0) {
+            if (a.getIndexCount() > 0) {
                 allMeshes.add(a.createMesh(vertices, normals, uvs));
             }
         }
@@ -219,7 +323,89 @@ public class OBJLoader extends JUMILoader {
         result.addMeshes(allMeshes);
 
         return result;
-
     }
 
+    /* Builds the models as the reader passes the file along, keeping only what the options want */
+    private static class SceneVisitor implements OBJVisitor {
+
+        private final String fileName;
+        private final JUMIImportOptions options;
+        private final boolean importNormals;
+        private final boolean importUVs;
+
+        // Every vertex, normal and UV in the file, as raw floats. Meshes take their share of these by index
+        final FloatList vertices = new FloatList();
+        final FloatList normals = new FloatList();
+        final FloatList uvs = new FloatList();
+        final ArrayList<OBJModelDefinition> modelContexts = new ArrayList();
+
+        private OBJMatLibDefinition materialLibrary = null;
+        private OBJModelDefinition currentModelContext = new OBJModelDefinition("default");
+        // Faces are only collected for objects and groups that pass the name filter
+        private boolean importingContext;
+
+        SceneVisitor(String inFileName, JUMIImportOptions inOptions) {
+            fileName = inFileName;
+            options = inOptions;
+            importNormals = options.importNormals();
+            importUVs = options.importUVs();
+
+            modelContexts.add(currentModelContext);
+            importingContext = options.acceptsName(currentModelContext.name);
+        }
+
+        @Override
+        public void vertex(float x, float y, float z) {
+            // OBJ indices refer to the vertices/UVs/normals as groups of 3, so let's do the same
+            vertices.add(x, y, z);
+        }
+
+        @Override
+        public void uv(float u, float v) {
+            if (importUVs) {
+                uvs.add(u, v);
+            }
+        }
+
+        @Override
+        public void normal(float x, float y, float z) {
+            if (importNormals) {
+                normals.add(x, y, z);
+            }
+        }
+
+        @Override
+        public void face(int[] v, int[] vt, int[] vn) {
+            if (importingContext && isSupportedFace(v.length)) {
+                dropUnimported(vt, vn, importUVs, importNormals);
+                addFace(currentModelContext, v, vt, vn, v.length);
+            }
+        }
+
+        @Override
+        public void object(String name) {
+            currentModelContext = findModelContext(modelContexts, name);
+            importingContext = options.acceptsName(currentModelContext.name);
+        }
+
+        @Override
+        public void group(String name) {
+            object(name);
+        }
+
+        @Override
+        public void useMaterial(String name) {
+            // Only do stuff if we've already had a material library defined (via mtllib)
+            if (materialLibrary != null && name != null) {
+                currentModelContext.materialDefinitions.add(materialLibrary.getMaterialDefinition(name));
+            }
+        }
+
+        @Override
+        public void materialLibrary(String libName) {
+            if (options.importMaterials()) {
+                materialLibrary = loadMaterialLibrary(fileName, libName);
+            }
+        }
+    }
 }
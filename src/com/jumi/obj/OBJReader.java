@@ -0,0 +1,147 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.obj;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * OBJReader
+ * 
+ * Scans an OBJ file and passes everything in it to an OBJVisitor as it's read. Only the line being read is held in
+ * memory, along with a count of the vertices, UVs and normals seen so far for resolving negative indices, so a
+ * file of any size can be read in constant memory.
+ * 
+ * @author Richard Greenlees
+ */
+public class OBJReader {
+
+    private final OBJScanner scanner;
+    private final boolean resolveIndices;
+
+    // How many of each have been read, which negative indices count back from
+    private long vertexCount = 0;
+    private long uvCount = 0;
+    private long normalCount = 0;
+
+    // The vertex, UV and normal index of each corner of the current face
+    private int[] corners = new int[OBJLoader.MAX_FACE_CORNERS * 3];
+    // The arrays passed to OBJVisitor.face, reused for every face with the same number of corners
+    private int[][][] faceArrays = new int[OBJLoader.MAX_FACE_CORNERS + 1][][];
+
+    public OBJReader(OBJScanner inScanner) {
+        this(inScanner, true);
+    }
+
+    /* Chunks of a file can't resolve negative indices by themselves, so they're passed on as they're written when
+     * resolveIndices is false */
+    OBJReader(OBJScanner inScanner, boolean inResolveIndices) {
+        scanner = inScanner;
+        resolveIndices = inResolveIndices;
+    }
+
+    /** Open the supplied file ready to be read. Close the reader once it's finished with */
+    public static OBJReader open(String fileName) throws IOException {
+        return new OBJReader(OBJScanner.open(fileName));
+    }
+
+    public void close() throws IOException {
+        scanner.close();
+    }
+
+    /** Read the rest of the file, passing each line to the visitor */
+    public void accept(OBJVisitor visitor) throws IOException {
+        while (scanner.nextLine()) {
+            switch (scanner.readKeyword()) {
+                case OBJScanner.VERTEX:
+                    visitor.vertex(scanner.readFloat(), scanner.readFloat(), scanner.readFloat());
+                    vertexCount++;
+                    break;
+                case OBJScanner.UV:
+                    float u = scanner.readFloat();
+                    visitor.uv(u, scanner.hasValue() ? scanner.readFloat() : 0.0f);
+                    uvCount++;
+                    break;
+                case OBJScanner.NORMAL:
+                    visitor.normal(scanner.readFloat(), scanner.readFloat(), scanner.readFloat());
+                    normalCount++;
+                    break;
+                case OBJScanner.FACE:
+                    readFace(visitor);
+                    break;
+                case OBJScanner.OBJECT:
+                    visitor.object(scanner.readWord());
+                    break;
+                case OBJScanner.GROUP:
+                    visitor.group(scanner.readWord());
+                    break;
+                case OBJScanner.USE_MATERIAL:
+                    visitor.useMaterial(scanner.readWord());
+                    break;
+                case OBJScanner.MATERIAL_LIBRARY:
+                    visitor.materialLibrary(scanner.readRemaining());
+                    break;
+            }
+        }
+    }
+
+    private void readFace(OBJVisitor visitor) {
+        int cornerCount = 0;
+        while (true) {
+            if (corners.length < (cornerCount + 1) * 3) {
+                corners = Arrays.copyOf(corners, corners.length * 2);
+            }
+            if (!scanner.readFaceCorner(corners, cornerCount * 3)) {
+                break;
+            }
+            cornerCount++;
+        }
+
+        if (faceArrays.length <= cornerCount) {
+            faceArrays = Arrays.copyOf(faceArrays, cornerCount + 1);
+        }
+        int[][] arrays = faceArrays[cornerCount];
+        if (arrays == null) {
+            arrays = new int[][] {new int[cornerCount], new int[cornerCount], new int[cornerCount]};
+            faceArrays[cornerCount] = arrays;
+        }
+        int[] v = arrays[0];
+        int[] vt = arrays[1];
+        int[] vn = arrays[2];
+
+        // Negative indices count back from the last one defined, so -1 is the most recent. +1 as OBJ goes from 1...n
+        for (int i = 0; i < cornerCount; i++) {
+            if (resolveIndices) {
+                v[i] = resolve(corners[i * 3], vertexCount);
+                vt[i] = resolve(corners[i * 3 + 1], uvCount);
+                vn[i] = resolve(corners[i * 3 + 2], normalCount);
+            } else {
+                v[i] = corners[i * 3];
+                vt[i] = corners[i * 3 + 1];
+                vn[i] = corners[i * 3 + 2];
+            }
+        }
+
+        visitor.face(v, vt, vn);
+    }
+
+    private static int resolve(int index, long count) {
+        return (index < 0) ? (int) (count + index + 1) : index;
+    }
+}
@@ -0,0 +1,501 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.obj;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * OBJScanner
+ * 
+ * Reads an OBJ file a line at a time straight from its bytes. The file is read through a small window, so it can
+ * be any size, and numbers are parsed in place without creating any strings or boxed values along the way.
+ * 
+ * @author Richard Greenlees
+ */
+public class OBJScanner {
+
+    // What the first word of a line says it holds
+    public static final int BLANK = 0;
+    public static final int UNKNOWN = 1;
+    public static final int VERTEX = 2;
+    public static final int UV = 3;
+    public static final int NORMAL = 4;
+    public static final int FACE = 5;
+    public static final int OBJECT = 6;
+    public static final int GROUP = 7;
+    public static final int USE_MATERIAL = 8;
+    public static final int MATERIAL_LIBRARY = 9;
+
+    private static final int WINDOW_SIZE = 1 << 20;
+    private static final byte[] USE_MATERIAL_WORD = "usemtl".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MATERIAL_LIBRARY_WORD = "mtllib".getBytes(StandardCharsets.US_ASCII);
+
+    // A mantissa under 2^24 scaled by one of these is a single correctly rounded float operation
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+    private static final long MAX_EXACT_FLOAT_MANTISSA = 1L << 24;
+    // Every double up to 10^22 is exact, so a mantissa under 2^53 scaled by one of these is correctly rounded
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    // The bits a double has beyond a float's precision, and their value when the double lies exactly halfway
+    // between two floats
+    private static final long FLOAT_ROUNDING_BITS = (1L << 29) - 1;
+    private static final long FLOAT_HALFWAY = 1L << 28;
+
+    private final FileChannel channel;
+    private final long end;
+
+    // The part of the file currently held, and the line being read from it
+    private byte[] window = new byte[WINDOW_SIZE];
+    private long windowStart;
+    private int windowLimit = 0;
+    private int position = 0;
+    private int lineEnd = -1;
+    private long lineNumber = 0;
+
+    /** Scan the lines between two offsets of an open file. Both should be the start of a line
+     * @param inChannel The file to read. It isn't closed by the scanner
+     * @param start Offset of the first line
+     * @param inEnd Offset just past the last line */
+    public OBJScanner(FileChannel inChannel, long start, long inEnd) {
+        channel = inChannel;
+        windowStart = start;
+        end = inEnd;
+    }
+
+    /** Open the supplied file and scan all of it. Close the scanner to close the file */
+    public static OBJScanner open(String fileName) throws IOException {
+        FileChannel fileChannel = new RandomAccessFile(fileName, "r").getChannel();
+        return new OBJScanner(fileChannel, 0, fileChannel.size());
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** The 1-based number of the current line, counted from the start offset */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /** Move to the next line
+     * @return False if there are no more lines */
+    public boolean nextLine() throws IOException {
+        position = lineEnd + 1;
+        if (position > windowLimit) {
+            position = windowLimit;
+        }
+
+        int scanFrom = position;
+        while (true) {
+            byte[] text = window;
+            int limit = windowLimit;
+            int i = scanFrom;
+            while (i < limit && text[i] != '\n') {
+                i++;
+            }
+
+            if (i < limit) {
+                lineEnd = i;
+                break;
+            }
+
+            // The line runs past the window, so read more of the file in behind it
+            int lineLength = limit - position;
+            if (!fill()) {
+                if (lineLength == 0) {
+                    return false;
+                }
+                // The last line doesn't have to end with a line break
+                lineEnd = windowLimit;
+                break;
+            }
+            scanFrom = position + lineLength;
+        }
+
+        lineNumber++;
+        return true;
+    }
+
+    /* Move the current line to the front of the window and read as much of the file as fits behind it, making
+     * the window bigger if the line already fills it
+     * @return False if there was nothing left to read */
+    private boolean fill() throws IOException {
+        int remaining = windowLimit - position;
+        long fileOffset = windowStart + windowLimit;
+        if (fileOffset >= end) {
+            return false;
+        }
+
+        if (remaining == window.length) {
+            window = Arrays.copyOf(window, window.length * 2);
+        }
+        System.arraycopy(window, position, window, 0, remaining);
+        windowStart += position;
+        position = 0;
+        windowLimit = remaining;
+
+        ByteBuffer target = ByteBuffer.wrap(window, remaining, (int) Math.min(window.length - remaining, end - fileOffset));
+        while (target.hasRemaining()) {
+            int read = channel.read(target, fileOffset);
+            if (read < 0) {
+                throw new EOFException("OBJ file ended early at offset " + fileOffset);
+            }
+            fileOffset += read;
+        }
+        windowLimit = target.position();
+
+        return true;
+    }
+
+    /* Skip spaces and tabs, returning the next character on the line, or -1 at the end of it or at a comment */
+    private int skipSpace() {
+        byte[] text = window;
+        while (position < lineEnd) {
+            int c = text[position];
+            if (c == ' ' || c == '\t' || c == '\r') {
+                position++;
+            } else if (c == '#') {
+                return -1;
+            } else {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '#';
+    }
+
+    /* Offset just past the end of the word starting at position */
+    private int wordEnd() {
+        int i = position;
+        while (i < lineEnd && !isSpace(window[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /** Read the first word of the line. Any of the values after it can then be read in order
+     * @return One of the line types, BLANK for empty lines and comments and UNKNOWN for anything not supported */
+    public int readKeyword() {
+        if (skipSpace() == -1) {
+            return BLANK;
+        }
+
+        int start = position;
+        position = wordEnd();
+        int length = position - start;
+        int first = window[start];
+
+        if (length == 1) {
+            switch (first) {
+                case 'v': case 'V': return VERTEX;
+                case 'f': case 'F': return FACE;
+                case 'o': case 'O': return OBJECT;
+                case 'g': case 'G': return GROUP;
+                default: return UNKNOWN;
+            }
+        }
+
+        if (length == 2 && (first == 'v' || first == 'V')) {
+            int second = window[start + 1];
+            if (second == 't' || second == 'T') {
+                return UV;
+            }
+            if (second == 'n' || second == 'N') {
+                return NORMAL;
+            }
+        } else if (length == USE_MATERIAL_WORD.length) {
+            if (matches(start, USE_MATERIAL_WORD)) {
+                return USE_MATERIAL;
+            }
+            if (matches(start, MATERIAL_LIBRARY_WORD)) {
+                return MATERIAL_LIBRARY;
+            }
+        }
+
+        return UNKNOWN;
+    }
+
+    private boolean matches(int start, byte[] word) {
+        for (int i = 0; i < word.length; i++) {
+            if (window[start + i] != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Is there another value on the line? */
+    public boolean hasValue() {
+        return skipSpace() != -1;
+    }
+
+    /** Read the next value on the line as a float, giving exactly the same result as Float.parseFloat */
+    public float readFloat() {
+        if (skipSpace() == -1) {
+            throw new NumberFormatException("Expected a number on line " + lineNumber);
+        }
+
+        byte[] text = window;
+        int start = position;
+        int i = start;
+        int limit = lineEnd;
+
+        boolean negative = false;
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        // Set when digits had to be dropped from the mantissa, so the fast conversion isn't exact
+        boolean truncated = false;
+
+        int c = text[i];
+        if (c == '-' || c == '+') {
+            negative = (c == '-');
+            c = (++i < limit) ? text[i] : -1;
+        }
+        int digitsStart = i;
+
+        while (c >= '0' && c <= '9') {
+            if (significantDigits < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    significantDigits++;
+                }
+            } else {
+                exponent++;
+                truncated = true;
+            }
+            c = (++i < limit) ? text[i] : -1;
+        }
+
+        int digitCount = i - digitsStart;
+        if (c == '.') {
+            c = (++i < limit) ? text[i] : -1;
+
+            int fractionStart = i;
+            while (c >= '0' && c <= '9') {
+                if (significantDigits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    exponent--;
+                    if (mantissa != 0) {
+                        significantDigits++;
+                    }
+                } else if (c != '0') {
+                    truncated = true;
+                }
+                c = (++i < limit) ? text[i] : -1;
+            }
+            digitCount += i - fractionStart;
+        }
+
+        if (digitCount > 0 && (c == 'e' || c == 'E')) {
+            c = (++i < limit) ? text[i] : -1;
+
+            boolean negativeExponent = false;
+            if (c == '-' || c == '+') {
+                negativeExponent = (c == '-');
+                c = (++i < limit) ? text[i] : -1;
+            }
+
+            int exponentStart = i;
+            int writtenExponent = 0;
+            while (c >= '0' && c <= '9') {
+                if (writtenExponent < 10000) {
+                    writtenExponent = writtenExponent * 10 + (c - '0');
+                }
+                c = (++i < limit) ? text[i] : -1;
+            }
+            if (i == exponentStart) {
+                // Leave Float.parseFloat to complain about it
+                digitCount = 0;
+            }
+            exponent += negativeExponent ? -writtenExponent : writtenExponent;
+        }
+
+        // Anything unusual, such as "NaN", "Infinity" or a malformed number, is left to Float.parseFloat
+        if (digitCount == 0 || (c != -1 && !isSpace(c))) {
+            return parseWord(start);
+        }
+        position = i;
+
+        if (mantissa == 0) {
+            return negative ? -0.0f : 0.0f;
+        }
+
+        float value;
+        if (!truncated && mantissa < MAX_EXACT_FLOAT_MANTISSA && exponent >= -10 && exponent <= 10) {
+            value = (exponent < 0) ? mantissa / FLOAT_POWERS_OF_TEN[-exponent] : mantissa * FLOAT_POWERS_OF_TEN[exponent];
+        } else if (!truncated && mantissa < MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            double exact = (exponent < 0) ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+
+            // Rounding the correctly rounded double to a float only goes wrong when it lands exactly between two floats
+            if ((Double.doubleToRawLongBits(exact) & FLOAT_ROUNDING_BITS) == FLOAT_HALFWAY) {
+                return parseWord(start);
+            }
+            value = (float) exact;
+        } else {
+            return parseWord(start);
+        }
+
+        return negative ? -value : value;
+    }
+
+    private float parseWord(int start) {
+        position = start;
+        int wordEnd = wordEnd();
+        String word = new String(window, start, wordEnd - start, StandardCharsets.US_ASCII);
+        position = wordEnd;
+
+        try {
+            return Float.parseFloat(word);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Invalid number " + word + " on line " + lineNumber);
+        }
+    }
+
+    /** Read the next value on the line as an int */
+    public int readInt() {
+        if (skipSpace() == -1) {
+            throw new NumberFormatException("Expected an integer on line " + lineNumber);
+        }
+
+        int value = parseInt();
+        if (position < lineEnd && !isSpace(window[position])) {
+            throw invalidInteger();
+        }
+        return value;
+    }
+
+    /* Parse an integer at position, stopping at the first character that isn't part of it */
+    private int parseInt() {
+        byte[] text = window;
+        int i = position;
+        int limit = lineEnd;
+
+        boolean negative = false;
+        int c = (i < limit) ? text[i] : -1;
+        if (c == '-' || c == '+') {
+            negative = (c == '-');
+            c = (++i < limit) ? text[i] : -1;
+        }
+
+        int digitsStart = i;
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw invalidInteger();
+            }
+            c = (++i < limit) ? text[i] : -1;
+        }
+
+        if (i == digitsStart) {
+            throw invalidInteger();
+        }
+
+        position = i;
+        return (int) (negative ? -value : value);
+    }
+
+    private NumberFormatException invalidInteger() {
+        position = Math.min(position, lineEnd);
+        int start = position;
+        String word = new String(window, start, wordEnd() - start, StandardCharsets.US_ASCII);
+        return new NumberFormatException("Invalid integer " + word + " on line " + lineNumber);
+    }
+
+    /** Read the next corner of a face, in any of the forms v, v/vt, v//vn or v/vt/vn. The indices are stored
+     * exactly as written, with 0 for any that are missing
+     * @param corner Receives the vertex, UV and normal indices
+     * @param offset Where in corner to put the vertex index
+     * @return False if there are no more corners on the line */
+    public boolean readFaceCorner(int[] corner, int offset) {
+        if (skipSpace() == -1) {
+            return false;
+        }
+
+        corner[offset] = parseInt();
+        corner[offset + 1] = 0;
+        corner[offset + 2] = 0;
+
+        if (position < lineEnd && window[position] == '/') {
+            position++;
+            if (position < lineEnd && window[position] != '/' && !isSpace(window[position])) {
+                corner[offset + 1] = parseInt();
+            }
+
+            if (position < lineEnd && window[position] == '/') {
+                position++;
+                if (position < lineEnd && !isSpace(window[position])) {
+                    corner[offset + 2] = parseInt();
+                }
+            }
+        }
+
+        if (position < lineEnd && !isSpace(window[position])) {
+            throw invalidInteger();
+        }
+        return true;
+    }
+
+    /** Read the next word on the line
+     * @return The word, or null if there isn't one */
+    public String readWord() {
+        if (skipSpace() == -1) {
+            return null;
+        }
+
+        int start = position;
+        position = wordEnd();
+        return new String(window, start, position - start, StandardCharsets.UTF_8);
+    }
+
+    /** Read everything left on the line, without the whitespace around it. Useful for file names with spaces */
+    public String readRemaining() {
+        if (skipSpace() == -1) {
+            return "";
+        }
+
+        int start = position;
+        int last = lineEnd;
+        while (last > start && isWhitespace(window[last - 1])) {
+            last--;
+        }
+        position = lineEnd;
+
+        return new String(window, start, last - start, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.obj;
+
+/**
+ * OBJVisitor
+ * 
+ * Receives the contents of an OBJ file from an OBJReader, one line at a time and in file order. Nothing is kept
+ * between calls, so a visitor can handle files far bigger than the heap, writing the data wherever it likes or
+ * dropping whatever it doesn't need.
+ * 
+ * @author Richard Greenlees
+ */
+public interface OBJVisitor {
+
+    /** Called for each vertex position (v) */
+    public void vertex(float x, float y, float z);
+
+    /** Called for each texture coordinate (vt). v is 0 if the file leaves it out */
+    public void uv(float u, float v);
+
+    /** Called for each vertex normal (vn) */
+    public void normal(float x, float y, float z);
+
+    /** Called for each face (f), with one entry in each array per corner. Indices start from 1 as they do in the file,
+     * and negative (relative) indices have already been turned into regular ones. The arrays are reused for the
+     * next face with the same number of corners, so copy anything that needs to be kept
+     * @param v The vertex index of each corner
+     * @param vt The UV index of each corner, or 0 if it has none
+     * @param vn The normal index of each corner, or 0 if it has none */
+    public void face(int[] v, int[] vt, int[] vn);
+
+    /** Called when a new object starts (o). name is null if the file doesn't give one */
+    public void object(String name);
+
+    /** Called when a new group starts (g). name is null if the file doesn't give one */
+    public void group(String name);
+
+    /** Called when a material is applied to the faces that follow (usemtl) */
+    public void useMaterial(String name);
+
+    /** Called when a material library is referenced (mtllib), with the file name exactly as it's written */
+    public void materialLibrary(String fileName);
+}
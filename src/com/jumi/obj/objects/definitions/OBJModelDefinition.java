@@ -18,15 +18,14 @@
  */
 package com.jumi.obj.objects.definitions;
 
-import com.jumi.data.Vector2;
-import com.jumi.data.Vector3;
+import com.jumi.data.FloatList;
+import com.jumi.data.IntList;
 import com.jumi.scene.objects.JUMIMaterial;
 import com.jumi.scene.objects.JUMIMesh;
 import com.jumi.scene.objects.JUMIMesh.FaceType;
 import com.jumi.scene.objects.JUMITexture;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 
 /**
  *
@@ -37,101 +36,146 @@ public class OBJModelDefinition {
     public String name = "";
     public ArrayList<OBJMaterialDefinition> materialDefinitions = new ArrayList();
 
-    float[] vertices = new float[0];
-    float[] normals = new float[0];
-    float[] uvs = new float[0];
-    int[] indices = new int[0];
-
-    public HashSet<String> uniqueIndexDefinitions = new HashSet();
-    public ArrayList<String> allIndexDefinitions = new ArrayList();
+    // The vertex, UV and normal index of each distinct face corner, in the order they were first used. 0 means no UV or normal
+    private final IntList uniqueCorners = new IntList();
+    // Every face corner, as an index into the unique corners
+    private final IntList indices = new IntList();
+    // Open addressing table from a corner to its position in uniqueCorners, + 1 so that 0 marks an empty slot
+    private int[] cornerTable = new int[64];
 
     public OBJModelDefinition(String inName) {
         super();
         name = inName;
     }
 
-    /** Generates a JUMIMesh from this OBJModelDefinition
-     * 
-     * @param vertexPool All the defined vertices for this OBJ
-     * @param normalPool All the defined normals for this OBJ
-     * @param uvPool All the defined UVs for this OBJ
-     * @return 
-     */
-    public JUMIMesh createMesh(ArrayList<Vector3> vertexPool, ArrayList<Vector3> normalPool, ArrayList<Vector2> uvPool) {
-        JUMIMesh result = new JUMIMesh(name);
-
-        // We're going to take the total vertices/normals/UVs and divide them up among each JUMIMesh in the scene
-        ArrayList<Vector3> modelVertices = new ArrayList();
-        ArrayList<Vector3> modelNormals = new ArrayList();
-        ArrayList<Vector2> modelUVs = new ArrayList();
-
-        // First create the set of vertices, UVs and normals relevant to this model. Do this using the unique indices associated with it
-        for (String a : uniqueIndexDefinitions) {
-            String[] indexDef = a.split("/");
-            int vindex = Integer.valueOf(indexDef[0]);
-
-            // Retrieve from the wider vertex pool, the vertices for this model. -1 as OBJ goes from 1...n
-            modelVertices.add(vertexPool.get(vindex - 1));
-
-            // If UVs are defined, retrieve from the wider UV pool the UVs for this model. -1 as OBJ goes from 1...n
-            if (indexDef.length > 1 && !indexDef[1].equals("")) {
-                int uvIndex = Integer.valueOf(indexDef[1]);
-                modelUVs.add(uvPool.get(uvIndex - 1));
+    /** Add a face corner. Corners using the same vertex, UV and normal all share one vertex of the mesh
+     * @param v The vertex index, from 1
+     * @param vt The UV index, from 1, or 0 if it has none
+     * @param vn The normal index, from 1, or 0 if it has none */
+    public void addCorner(int v, int vt, int vn) {
+        int mask = cornerTable.length - 1;
+        int slot = hashCorner(v, vt, vn) & mask;
+        int[] corners = uniqueCorners.array();
+
+        while (true) {
+            int entry = cornerTable[slot];
+            if (entry == 0) {
+                break;
             }
 
-            // If normals are defined, retrieve from the wider normal pool the normals for this model. -1 as OBJ goes from 1...n
-            if (indexDef.length > 2 && !indexDef[2].equals("")) {
-                int nIndex = Integer.valueOf(indexDef[2]);
-                modelNormals.add(normalPool.get(nIndex - 1));
+            int corner = (entry - 1) * 3;
+            if (corners[corner] == v && corners[corner + 1] == vt && corners[corner + 2] == vn) {
+                indices.add(entry - 1);
+                return;
             }
+            slot = (slot + 1) & mask;
         }
 
-        // Create the arrays ready to hold the raw float data
-        result.vertices = new float[modelVertices.size() * 3];
-        result.normals = new float[modelNormals.size() * 3];
-        result.uvs = new float[modelUVs.size() * 2];
-        result.indices = new int[allIndexDefinitions.size()];
+        int newIndex = uniqueCorners.size() / 3;
+        uniqueCorners.add(v, vt, vn);
+        cornerTable[slot] = newIndex + 1;
+        indices.add(newIndex);
 
-        int arrayCounter = 0;
+        // Keep the table at most half full so probes stay short
+        if ((newIndex + 1) * 2 > cornerTable.length) {
+            growCornerTable();
+        }
+    }
 
-        // Create a hashmap with each unique face mapped against the order in which it appears. Lookup is MUCH faster than ArrayList for large models
-        HashMap<String, Integer> uniqueIndices = new HashMap();
+    private void growCornerTable() {
+        int[] newTable = new int[cornerTable.length * 2];
+        int mask = newTable.length - 1;
+        int cornerCount = uniqueCorners.size() / 3;
+        int[] corners = uniqueCorners.array();
 
-        for (String a : uniqueIndexDefinitions) {
-            uniqueIndices.put(a, arrayCounter++);
+        for (int i = 0; i < cornerCount; i++) {
+            int slot = hashCorner(corners[i * 3], corners[i * 3 + 1], corners[i * 3 + 2]) & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = i + 1;
         }
 
-        arrayCounter = 0;
+        cornerTable = newTable;
+    }
 
-        // For every index defined, retrieve the index within the hashmap to get our final index!
-        for (String a : allIndexDefinitions) {
-            result.indices[arrayCounter++] = uniqueIndices.get(a);
+    private static int hashCorner(int v, int vt, int vn) {
+        int hash = v * 0x9E3779B1 + vt * 0x85EBCA77 + vn * 0xC2B2AE3D;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static void checkIndex(int index, int count, String kind) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Face refers to " + kind + " " + (index + 1) + ", but only " + count + " are defined");
         }
+    }
 
-        arrayCounter = 0;
+    /** How many face corners have been added, 3 for every triangle */
+    public int getIndexCount() {
+        return indices.size();
+    }
 
-        // Now populate the raw float data for vertices, UVs and normals (if applicable)
-        for (Vector3 a : modelVertices) {
-            result.vertices[arrayCounter++] = a.x;
-            result.vertices[arrayCounter++] = a.y;
-            result.vertices[arrayCounter++] = a.z;
-        }
+    /** Generates a JUMIMesh from this OBJModelDefinition
+     * 
+     * @param vertexPool All the defined vertices for this OBJ, 3 floats each
+     * @param normalPool All the defined normals for this OBJ, 3 floats each
+     * @param uvPool All the defined UVs for this OBJ, 2 floats each
+     * @return 
+     */
+    public JUMIMesh createMesh(FloatList vertexPool, FloatList normalPool, FloatList uvPool) {
+        JUMIMesh result = new JUMIMesh(name);
 
-        arrayCounter = 0;
+        // Each unique corner becomes one vertex of the mesh, in the order they were first used. Not every corner has
+        // to have a UV or normal, so those arrays are trimmed afterwards if any were left out
+        int uniqueCount = uniqueCorners.size() / 3;
+        float[] modelVertices = new float[uniqueCount * 3];
+        float[] modelNormals = new float[uniqueCount * 3];
+        float[] modelUVs = new float[uniqueCount * 2];
+        int normalCount = 0;
+        int uvCount = 0;
+
+        // The pools are read directly, so each corner's indices are checked once against the pool sizes instead
+        int[] corners = uniqueCorners.array();
+        float[] vertexData = vertexPool.array();
+        float[] uvData = uvPool.array();
+        float[] normalData = normalPool.array();
+        int vertexCount = vertexPool.size() / 3;
+        int uvPoolCount = uvPool.size() / 2;
+        int normalPoolCount = normalPool.size() / 3;
+
+        // Take the vertices, UVs and normals relevant to this model straight from the wider pools
+        for (int i = 0; i < uniqueCount; i++) {
+            // -1 as OBJ goes from 1...n
+            int vIndex = corners[i * 3] - 1;
+            int uvIndex = corners[i * 3 + 1] - 1;
+            int nIndex = corners[i * 3 + 2] - 1;
+
+            checkIndex(vIndex, vertexCount, "vertex");
+            modelVertices[i * 3] = vertexData[vIndex * 3];
+            modelVertices[i * 3 + 1] = vertexData[vIndex * 3 + 1];
+            modelVertices[i * 3 + 2] = vertexData[vIndex * 3 + 2];
+
+            // If UVs are defined, retrieve them from the wider UV pool
+            if (uvIndex >= 0) {
+                checkIndex(uvIndex, uvPoolCount, "UV");
+                modelUVs[uvCount++] = uvData[uvIndex * 2];
+                modelUVs[uvCount++] = uvData[uvIndex * 2 + 1];
+            }
 
-        for (Vector3 a : modelNormals) {
-            result.normals[arrayCounter++] = a.x;
-            result.normals[arrayCounter++] = a.y;
-            result.normals[arrayCounter++] = a.z;
+            // If normals are defined, retrieve them from the wider normal pool
+            if (nIndex >= 0) {
+                checkIndex(nIndex, normalPoolCount, "normal");
+                modelNormals[normalCount++] = normalData[nIndex * 3];
+                modelNormals[normalCount++] = normalData[nIndex * 3 + 1];
+                modelNormals[normalCount++] = normalData[nIndex * 3 + 2];
+            }
         }
 
-        arrayCounter = 0;
+        result.vertices = modelVertices;
+        result.normals = (normalCount == modelNormals.length) ? modelNormals : Arrays.copyOf(modelNormals, normalCount);
+        result.uvs = (uvCount == modelUVs.length) ? modelUVs : Arrays.copyOf(modelUVs, uvCount);
+        result.indices = indices.toArray();
 
-        for (Vector2 a : modelUVs) {
-            result.uvs[arrayCounter++] = a.x;
-            result.uvs[arrayCounter++] = a.y;
-        }
-       
         // Now create all the materials for the mesh
         result.materials = new JUMIMaterial[materialDefinitions.size()];
 
@@ -21,6 +21,7 @@ package com.jumi.scene;
 
 import com.jumi.scene.objects.JUMIMesh;
 import com.jumi.scene.objects.JUMITexture;
+import com.jumi.scene.objects.JUMITextureBlob;
 import java.util.ArrayList;
 import java.util.EnumSet;
 
@@ -37,6 +38,8 @@ public class JUMIScene {
     
     JUMIMesh[] meshes = new JUMIMesh[0];
     JUMITexture[] textures = new JUMITexture[0];
+    // Distinct embedded texture data, shared by every texture that embeds the same file
+    JUMITextureBlob[] textureBlobs = new JUMITextureBlob[0];
     
     public static enum MeshAttributes {
         VERTICES, NORMALS, TEXTURECOORDINATES, TANGENTS;
@@ -57,6 +60,13 @@ public class JUMIScene {
         }
     }
     
+    public void addTextureBlobs(ArrayList<JUMITextureBlob> newBlobs) {
+        textureBlobs = new JUMITextureBlob[newBlobs.size()];
+        for (int i = 0; i < textureBlobs.length; i++) {
+            textureBlobs[i] = newBlobs.get(i);
+        }
+    }
+    
     public JUMIMesh getMeshByName(String name) {
         for (JUMIMesh i : meshes) {
             if (i.name.equals(name)) {
@@ -84,6 +94,12 @@ public class JUMIScene {
         return meshes;
     }
     
+    /** Every distinct piece of embedded texture data in the scene. Decode these rather than each texture's data to
+     * decode each embedded file only once */
+    public JUMITextureBlob[] getAllTextureBlobs() {
+        return textureBlobs;
+    }
+    
     public String toString() {
         String result = "JUMIScene: " + "\n\tMeshes: ";
         for (int i = 0; i < meshes.length; i++) {
@@ -0,0 +1,70 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.scene;
+
+import com.jumi.scene.objects.JUMITextureBlob;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * JUMITextureBlobTable
+ * 
+ * Collects the embedded texture data of a scene, keeping a single blob for each distinct file. Data is looked up
+ * by its hash, then compared byte for byte, so two files that happen to share a hash are still kept apart.
+ * 
+ * @author Richard Greenlees
+ */
+public class JUMITextureBlobTable {
+
+    // Almost always one blob per hash, anything else is a genuine collision
+    private final HashMap<Long, ArrayList<JUMITextureBlob>> blobsByHash = new HashMap();
+    private final ArrayList<JUMITextureBlob> blobs = new ArrayList();
+
+    /** Return the blob holding the supplied data, creating it if this is the first time the data has been seen
+     * @param data The embedded data
+     * @param hash The xxHash64 of the data */
+    public JUMITextureBlob add(ByteBuffer data, long hash) {
+        ArrayList<JUMITextureBlob> candidates = blobsByHash.get(hash);
+        if (candidates == null) {
+            candidates = new ArrayList(1);
+            blobsByHash.put(hash, candidates);
+        }
+
+        for (JUMITextureBlob candidate : candidates) {
+            if (candidate.contentEquals(data)) {
+                return candidate;
+            }
+        }
+
+        JUMITextureBlob newBlob = new JUMITextureBlob(data, hash);
+        candidates.add(newBlob);
+        blobs.add(newBlob);
+        return newBlob;
+    }
+
+    /** Every distinct blob, in the order they were first added */
+    public ArrayList<JUMITextureBlob> getBlobs() {
+        return blobs;
+    }
+
+    public int size() {
+        return blobs.size();
+    }
+}
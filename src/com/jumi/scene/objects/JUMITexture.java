@@ -18,7 +18,9 @@
  */
 package com.jumi.scene.objects;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  *
@@ -31,20 +33,54 @@ public class JUMITexture {
     public String type;
     public String name;
     
-    private byte[] textureData = new byte[0];
+    // Read-only, and usually a view straight into the mapped model file, so it is never modified or copied here
+    private ByteBuffer textureData = ByteBuffer.allocate(0).asReadOnlyBuffer();
+    // The shared copy of the embedded data, if it came from a scene's blob table
+    private JUMITextureBlob textureBlob = null;
     
     public int textureDataSize() {
-        return textureData.length;
+        return textureData.remaining();
     }
     
     public void setTextureData(byte[] data) {
-        textureData = data;
+        textureData = ByteBuffer.wrap(data).asReadOnlyBuffer();
+        textureBlob = null;
     }
     
-    /** Return the raw binary data for embedded textures (currently FBX only) */
+    /** Set the raw binary data for an embedded texture. The buffer is kept as a read-only view, not copied */
+    public void setTextureData(ByteBuffer data) {
+        textureData = data.asReadOnlyBuffer();
+        textureBlob = null;
+    }
+    
+    /** Use the data of a shared blob as this texture's embedded data */
+    public void setTextureBlob(JUMITextureBlob blob) {
+        textureData = blob.getData();
+        textureBlob = blob;
+    }
+    
+    /** The shared blob holding this texture's embedded data, or null if it has none. Textures embedding the same
+     * file return the same blob */
+    public JUMITextureBlob getTextureBlob() {
+        return textureBlob;
+    }
+    
+    /** Return a copy of the raw binary data for embedded textures (currently FBX only). Use getEmbeddedBuffer,
+     * bufferData or transferData to avoid the copy */
     public byte[] getEmbeddedData() {
-        if (textureData.length > 0) {
-            return textureData;
+        if (textureData.hasRemaining()) {
+            byte[] result = new byte[textureData.remaining()];
+            textureData.duplicate().get(result);
+            return result;
+        } else {
+            return null;
+        }
+    }
+    
+    /** Return a read-only view of the raw binary data for embedded textures, or null if there isn't any */
+    public ByteBuffer getEmbeddedBuffer() {
+        if (textureData.hasRemaining()) {
+            return textureData.duplicate();
         } else {
             return null;
         }
@@ -52,18 +88,27 @@ public class JUMITexture {
     
     /** Buffer the raw binary data for embedded textures into the supplied ByteBuffer (Currently FBX only) */
     public void bufferData(ByteBuffer buf) {
-        for (int i = 0; i < textureData.length; i++) {
-            buf.put(textureData[i]);
+        buf.put(textureData.duplicate());
+    }
+    
+    /** Write the raw binary data for embedded textures to the supplied channel, such as a file or socket
+     * @return The number of bytes written */
+    public long transferData(WritableByteChannel channel) throws IOException {
+        ByteBuffer source = textureData.duplicate();
+        long written = 0;
+        while (source.hasRemaining()) {
+            written += channel.write(source);
         }
+        return written;
     }
     
     public String toString() {
-        boolean embeddedData = (textureData != null && textureData.length > 0);
+        boolean embeddedData = textureData.hasRemaining();
         return "Texture:" + "\n\tName: " + name
                           + "\n\tFile Name: " + fileName
                           + "\n\tRelative File Location: " + relativeFilename
                           + "\n\tFull Path: " + fullFilePath
-                          + "\n\tEmbedded Data: " + embeddedData + " " + ((embeddedData) ? "(" + textureData.length + " bytes)" : "");
+                          + "\n\tEmbedded Data: " + embeddedData + " " + ((embeddedData) ? "(" + textureData.remaining() + " bytes)" : "");
     }
     
 }
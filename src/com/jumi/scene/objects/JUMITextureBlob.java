@@ -0,0 +1,64 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.scene.objects;
+
+import java.nio.ByteBuffer;
+
+/**
+ * JUMITextureBlob
+ * 
+ * The bytes of a single embedded texture file. Textures with identical embedded data share one blob, so it only
+ * needs decoding once, whichever texture asks for it first.
+ * 
+ * @author Richard Greenlees
+ */
+public class JUMITextureBlob {
+
+    // Read-only, and usually a view straight into the mapped model file
+    private final ByteBuffer data;
+    private final long hash;
+
+    public JUMITextureBlob(ByteBuffer inData, long inHash) {
+        data = inData.asReadOnlyBuffer();
+        hash = inHash;
+    }
+
+    /** A read-only view of the embedded data */
+    public ByteBuffer getData() {
+        return data.duplicate();
+    }
+
+    /** The xxHash64 of the embedded data */
+    public long getHash() {
+        return hash;
+    }
+
+    public int size() {
+        return data.remaining();
+    }
+
+    /** Does this blob hold exactly the supplied bytes? */
+    public boolean contentEquals(ByteBuffer other) {
+        return data.equals(other);
+    }
+
+    public String toString() {
+        return "Texture Blob: " + size() + " bytes, hash " + Long.toHexString(hash);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * XXHash64Test
+ * 
+ * Checks the hash against published xxHash64 values, and that it only depends on the bytes being hashed
+ * 
+ * @author Richard Greenlees
+ */
+public class XXHash64Test {
+
+    @Test
+    public void matchesReferenceValues() {
+        assertEquals(0xEF46DB3751D8E999L, hash(""));
+        assertEquals(0xD24EC4F1A98C6E5BL, hash("a"));
+        assertEquals(0x44BC2CF5AD770999L, hash("abc"));
+        // Long enough to go through the 32-byte stripes as well as the tail
+        assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    public void ignoresPositionAndByteOrder() {
+        byte[] bytes = new byte[1000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31 + 7);
+        }
+
+        // Every length from 0 to 100 covers each mix of stripes, 8-byte, 4-byte and single byte tails
+        for (int length = 0; length <= 100; length++) {
+            long expected = XXHash64.hash(ByteBuffer.wrap(bytes, 0, length).slice());
+
+            ByteBuffer offset = ByteBuffer.allocate(length + 13).order(ByteOrder.BIG_ENDIAN);
+            offset.position(13);
+            offset.put(bytes, 0, length);
+            offset.position(13);
+
+            assertEquals("length " + length, expected, XXHash64.hash(offset));
+            assertEquals(13, offset.position());
+            assertEquals(ByteOrder.BIG_ENDIAN, offset.order());
+        }
+    }
+
+    @Test
+    public void seedChangesHash() {
+        ByteBuffer data = ByteBuffer.wrap("abc".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(XXHash64.hash(data), XXHash64.hash(data, 0));
+        assertTrue(XXHash64.hash(data, 1) != XXHash64.hash(data, 0));
+    }
+
+    private static long hash(String text) {
+        return XXHash64.hash(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.fbx;
+
+import com.jumi.scene.JUMIScene;
+import com.jumi.scene.objects.JUMIMesh;
+import com.jumi.fbx.FBXTestFile.Node;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * FBXAsciiTranscoderTest
+ * 
+ * Writes the same small scene as both ASCII and binary FBX, and checks the loader gives the same meshes for each
+ * 
+ * @author Richard Greenlees
+ */
+public class FBXAsciiTranscoderTest {
+
+    @Test
+    public void asciiMatchesBinary73() throws IOException {
+        compareImports(7300);
+    }
+
+    @Test
+    public void asciiMatchesBinary75() throws IOException {
+        compareImports(7500);
+    }
+
+    @Test
+    public void transcodedFileIsBinary() throws IOException {
+        byte[] ascii = FBXTestFile.toAscii(createScene(7300)).getBytes(StandardCharsets.US_ASCII);
+        FBXBuffer asciiData = FBXBuffer.wrap(ascii);
+        assertFalse(FBXAsciiTranscoder.isBinary(asciiData));
+
+        FBXBuffer binaryData = FBXAsciiTranscoder.transcode(asciiData);
+        assertTrue(FBXAsciiTranscoder.isBinary(binaryData));
+        assertEquals(7300, binaryData.getInt(23));
+    }
+
+    private void compareImports(int version) throws IOException {
+        Node[] scene = createScene(version);
+        File asciiFile = File.createTempFile("jumi", ".fbx");
+        File binaryFile = File.createTempFile("jumi", ".fbx");
+
+        try {
+            FBXTestFile.write(asciiFile, FBXTestFile.toAscii(scene).getBytes(StandardCharsets.US_ASCII));
+            FBXTestFile.write(binaryFile, FBXTestFile.toBinary(scene, version));
+
+            JUMIScene fromAscii = FBXLoader.importModel(asciiFile.getPath());
+            JUMIScene fromBinary = FBXLoader.importModel(binaryFile.getPath());
+
+            assertEquals(1, fromBinary.numMeshes());
+            assertEquals(fromBinary.numMeshes(), fromAscii.numMeshes());
+
+            JUMIMesh expected = fromBinary.getMeshByIndex(0);
+            JUMIMesh actual = fromAscii.getMeshByIndex(0);
+            assertEquals(expected.name, actual.name);
+            assertArrayEquals("vertices", expected.vertices, actual.vertices, 0.0f);
+            assertArrayEquals("normals", expected.normals, actual.normals, 0.0f);
+            assertArrayEquals("uvs", expected.uvs, actual.uvs, 0.0f);
+            assertArrayEquals("indices", expected.indices, actual.indices);
+            assertTrue(expected.vertices.length > 0 && expected.normals.length > 0 && expected.uvs.length > 0);
+        } finally {
+            asciiFile.delete();
+            binaryFile.delete();
+        }
+    }
+
+    /* A cube with normals and UVs, attached to a model. The numbers are awkward on purpose, so the ASCII side has to
+     * parse exponents, negative values and long fractions */
+    private static Node[] createScene(int version) {
+        double[] vertices = new double[24];
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = ((i * 7) % 5 - 2) * 1.0000001 + i * 1e-7;
+        }
+        vertices[5] = 1.5e10;
+        vertices[6] = -3.25e-12;
+
+        int[] polygons = {0, 1, 2, ~3, 4, 5, 6, ~7, 0, 4, 7, ~3, 1, 5, 6, ~2, 3, 2, 6, ~7, 0, 1, 5, ~4};
+        double[] normals = new double[polygons.length * 3];
+        for (int i = 0; i < normals.length; i++) {
+            normals[i] = Math.sin(i * 0.3);
+        }
+        double[] uvs = new double[28];
+        for (int i = 0; i < uvs.length; i++) {
+            uvs[i] = Math.cos(i * 0.7) * 0.5 + 0.5;
+        }
+        int[] uvIndex = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+        Node geometry = new Node("Geometry", 1001L, "Geometry::Cube", "Mesh").with(
+                new Node("GeometryVersion", 124),
+                new Node("Vertices", (Object) vertices),
+                new Node("PolygonVertexIndex", (Object) polygons),
+                new Node("LayerElementNormal", 0).with(
+                        new Node("Version", 101),
+                        new Node("MappingInformationType", "ByPolygonVertex"),
+                        new Node("ReferenceInformationType", "Direct"),
+                        new Node("Normals", (Object) normals)),
+                new Node("LayerElementUV", 0).with(
+                        new Node("Version", 101),
+                        new Node("Name", "map1"),
+                        new Node("MappingInformationType", "ByPolygonVertex"),
+                        new Node("ReferenceInformationType", "IndexToDirect"),
+                        new Node("UV", (Object) uvs),
+                        new Node("UVIndex", (Object) uvIndex)));
+        Node model = new Node("Model", 2001L, "Model::Cube", "Mesh").with(new Node("Version", 232));
+
+        return new Node[] {
+            new Node("FBXHeaderExtension").with(new Node("FBXHeaderVersion", 1003), new Node("FBXVersion", version)),
+            new Node("Objects").with(geometry, model),
+            new Node("Connections").with(
+                    new Node("C", "OO", 2001L, 0L),
+                    new Node("C", "OO", 1001L, 2001L))
+        };
+    }
+}
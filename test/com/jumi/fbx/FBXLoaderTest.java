@@ -0,0 +1,149 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.fbx;
+
+import com.jumi.JUMIImportOptions;
+import com.jumi.fbx.FBXTestFile.Node;
+import com.jumi.scene.JUMIScene;
+import com.jumi.scene.objects.JUMIMesh;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * FBXLoaderTest
+ * 
+ * Checks that inflating compressed arrays on the worker pool gives the same scene as inflating them inline, including
+ * when the options leave some of the geometry unread
+ * 
+ * @author Richard Greenlees
+ */
+public class FBXLoaderTest {
+
+    private static final int MESH_COUNT = 8;
+
+    @Test
+    public void parallelInflationMatchesInline() throws IOException {
+        compareImports(null);
+    }
+
+    @Test
+    public void parallelInflationMatchesInlineWithNameFilter() throws IOException {
+        compareImports("Keep");
+    }
+
+    private void compareImports(String nameFilter) throws IOException {
+        File file = File.createTempFile("jumi", ".fbx");
+
+        try {
+            FBXTestFile.write(file, FBXTestFile.toBinary(createScene(new Random(11)), 7300));
+
+            JUMIImportOptions inline = new JUMIImportOptions();
+            inline.nameFilter = nameFilter;
+            JUMIScene expected = FBXLoader.importModel(file.getPath(), inline);
+            assertEquals((nameFilter == null) ? MESH_COUNT : MESH_COUNT / 2, expected.numMeshes());
+
+            JUMIImportOptions parallel = new JUMIImportOptions();
+            parallel.nameFilter = nameFilter;
+            parallel.parallelInflation = true;
+            assertScenesEqual(expected, FBXLoader.importModel(file.getPath(), parallel));
+
+            parallel.parallelParsing = true;
+            assertScenesEqual(expected, FBXLoader.importModel(file.getPath(), parallel));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void assertScenesEqual(JUMIScene expected, JUMIScene actual) {
+        assertEquals(expected.numMeshes(), actual.numMeshes());
+
+        for (int i = 0; i < expected.numMeshes(); i++) {
+            JUMIMesh expectedMesh = expected.getMeshByIndex(i);
+            JUMIMesh actualMesh = actual.getMeshByIndex(i);
+
+            assertEquals(expectedMesh.name, actualMesh.name);
+            assertArrayEquals(expectedMesh.name, expectedMesh.vertices, actualMesh.vertices, 0.0f);
+            assertArrayEquals(expectedMesh.name, expectedMesh.normals, actualMesh.normals, 0.0f);
+            assertArrayEquals(expectedMesh.name, expectedMesh.indices, actualMesh.indices);
+        }
+    }
+
+    /* Meshes whose names alternate between Keep and Drop, each with compressed arrays big enough to go to the pool.
+     * Every mesh also has a child model with geometry of its own, which is never built as only the first geometry
+     * under a mesh is */
+    private static Node[] createScene(Random random) {
+        ArrayList<Node> objects = new ArrayList<Node>();
+        ArrayList<Node> connections = new ArrayList<Node>();
+        long uid = 1000;
+
+        for (int i = 0; i < MESH_COUNT; i++) {
+            String name = ((i % 2 == 0) ? "Keep" : "Drop") + i;
+            long modelID = uid++;
+            long childID = uid++;
+
+            objects.add(createGeometry(random, uid, name));
+            objects.add(new Node("Model", modelID, "Model::" + name, "Mesh").with(new Node("Version", 232)));
+            connections.add(new Node("C", "OO", modelID, 0L));
+            connections.add(new Node("C", "OO", uid++, modelID));
+
+            objects.add(createGeometry(random, uid, name + "Child"));
+            objects.add(new Node("Model", childID, "Model::" + name + "Child", "Mesh").with(new Node("Version", 232)));
+            connections.add(new Node("C", "OO", childID, modelID));
+            connections.add(new Node("C", "OO", uid++, childID));
+        }
+
+        return new Node[] {
+            new Node("FBXHeaderExtension").with(new Node("FBXVersion", 7300)),
+            new Node("Objects").with(objects.toArray(new Node[objects.size()])),
+            new Node("Connections").with(connections.toArray(new Node[connections.size()]))
+        };
+    }
+
+    private static Node createGeometry(Random random, long uid, String name) {
+        int vertexCount = 500 + random.nextInt(500);
+        double[] vertices = new double[vertexCount * 3];
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = random.nextGaussian();
+        }
+
+        int[] polygons = new int[(vertexCount - 2) * 3];
+        for (int i = 0; i < polygons.length; i += 3) {
+            polygons[i] = random.nextInt(vertexCount);
+            polygons[i + 1] = random.nextInt(vertexCount);
+            polygons[i + 2] = ~random.nextInt(vertexCount);
+        }
+
+        double[] normals = new double[polygons.length * 3];
+        for (int i = 0; i < normals.length; i++) {
+            normals[i] = random.nextDouble();
+        }
+
+        return new Node("Geometry", uid, "Geometry::" + name, "Mesh").with(
+                new Node("Vertices", (Object) vertices).compressed(),
+                new Node("PolygonVertexIndex", (Object) polygons).compressed(),
+                new Node("LayerElementNormal", 0).with(
+                        new Node("MappingInformationType", "ByPolygonVertex"),
+                        new Node("ReferenceInformationType", "Direct"),
+                        new Node("Normals", (Object) normals).compressed()));
+    }
+}
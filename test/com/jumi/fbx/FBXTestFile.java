@@ -0,0 +1,225 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.fbx;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * FBXTestFile
+ * 
+ * Builds small FBX files for the tests. The same nodes can be written as ASCII or as binary in either record layout
+ * 
+ * @author Richard Greenlees
+ */
+class FBXTestFile {
+
+    private FBXTestFile() {
+    }
+
+    static String toAscii(Node[] nodes) {
+        StringBuilder result = new StringBuilder("; FBX project file\n");
+        for (Node node : nodes) {
+            appendAscii(result, node, "");
+        }
+        return result.toString();
+    }
+
+    static byte[] toBinary(Node[] nodes, int version) {
+        boolean wide = (version >= 7500);
+        ByteBuffer out = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        out.put("Kaydara FBX Binary  \0".getBytes(StandardCharsets.US_ASCII));
+        out.put((byte) 0x1A).put((byte) 0).putInt(version);
+
+        for (Node node : nodes) {
+            out = putRecord(out, node, wide);
+        }
+        out = ensureRemaining(out, 25);
+        out.put(new byte[wide ? 25 : 13]);
+
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void appendAscii(StringBuilder out, Node node, String indent) {
+        out.append(indent).append(node.name).append(": ");
+
+        for (int i = 0; i < node.properties.length; i++) {
+            Object property = node.properties[i];
+            if (i > 0) {
+                out.append(", ");
+            }
+
+            if (property instanceof String) {
+                out.append('"').append(property).append('"');
+            } else if (property instanceof double[]) {
+                double[] values = (double[]) property;
+                out.append('*').append(values.length).append(" {\n").append(indent).append("\ta: ");
+                for (int j = 0; j < values.length; j++) {
+                    out.append(j > 0 ? "," : "").append(values[j]);
+                }
+                out.append('\n').append(indent).append('}');
+            } else if (property instanceof int[]) {
+                int[] values = (int[]) property;
+                out.append('*').append(values.length).append(" {\n").append(indent).append("\ta: ");
+                for (int j = 0; j < values.length; j++) {
+                    out.append(j > 0 ? "," : "").append(values[j]);
+                }
+                out.append('\n').append(indent).append('}');
+            } else {
+                out.append(property);
+            }
+        }
+
+        out.append(" {\n");
+        for (Node child : node.children) {
+            appendAscii(out, child, indent + "\t");
+        }
+        out.append(indent).append("}\n");
+    }
+
+    private static ByteBuffer putRecord(ByteBuffer out, Node node, boolean wide) {
+        byte[] properties = propertyBytes(node);
+        out = ensureRemaining(out, 25 + node.name.length() + properties.length);
+
+        int start = out.position();
+        out.position(start + (wide ? 24 : 12));
+        out.put((byte) node.name.length()).put(node.name.getBytes(StandardCharsets.US_ASCII));
+        out.put(properties);
+
+        for (Node child : node.children) {
+            out = putRecord(out, child, wide);
+        }
+        if (node.children.length > 0 || node.properties.length == 0) {
+            out = ensureRemaining(out, 25);
+            out.put(new byte[wide ? 25 : 13]);
+        }
+
+        if (wide) {
+            out.putLong(start, out.position()).putLong(start + 8, node.properties.length).putLong(start + 16, properties.length);
+        } else {
+            out.putInt(start, out.position()).putInt(start + 4, node.properties.length).putInt(start + 8, properties.length);
+        }
+        return out;
+    }
+
+    private static byte[] propertyBytes(Node node) {
+        ByteBuffer out = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+
+        for (Object property : node.properties) {
+            if (property instanceof Long) {
+                out = ensureRemaining(out, 9);
+                out.put((byte) 'L').putLong((Long) property);
+            } else if (property instanceof Integer) {
+                out = ensureRemaining(out, 5);
+                out.put((byte) 'I').putInt((Integer) property);
+            } else if (property instanceof String) {
+                // "Class::Name" in ASCII files is "Name\0\1Class" in binary ones
+                String value = (String) property;
+                int separator = value.indexOf("::");
+                if (separator >= 0) {
+                    value = value.substring(separator + 2) + "\0\1" + value.substring(0, separator);
+                }
+                byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+                out = ensureRemaining(out, 5 + bytes.length);
+                out.put((byte) 'S').putInt(bytes.length).put(bytes);
+            } else if (property instanceof double[]) {
+                double[] values = (double[]) property;
+                ByteBuffer array = ByteBuffer.allocate(values.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+                for (double value : values) {
+                    array.putDouble(value);
+                }
+                out = putArray(out, 'd', values.length, array.array(), node.compressed);
+            } else {
+                int[] values = (int[]) property;
+                ByteBuffer array = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+                for (int value : values) {
+                    array.putInt(value);
+                }
+                out = putArray(out, 'i', values.length, array.array(), node.compressed);
+            }
+        }
+
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    private static ByteBuffer putArray(ByteBuffer out, char typeCode, int length, byte[] payload, boolean compressed) {
+        if (compressed) {
+            Deflater deflater = new Deflater();
+            deflater.setInput(payload);
+            deflater.finish();
+            byte[] deflated = new byte[payload.length + 64];
+            int deflatedLength = deflater.deflate(deflated);
+            deflater.end();
+            payload = Arrays.copyOf(deflated, deflatedLength);
+        }
+
+        out = ensureRemaining(out, 13 + payload.length);
+        out.put((byte) typeCode).putInt(length).putInt(compressed ? 1 : 0).putInt(payload.length).put(payload);
+        return out;
+    }
+
+    private static ByteBuffer ensureRemaining(ByteBuffer buffer, int count) {
+        if (buffer.remaining() >= count) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + count)).order(ByteOrder.LITTLE_ENDIAN);
+        larger.put(buffer.array(), 0, buffer.position());
+        return larger;
+    }
+
+    /* A node and its properties. Strings are given in their ASCII form */
+    static class Node {
+
+        final String name;
+        final Object[] properties;
+        Node[] children = new Node[0];
+        // Whether the binary file deflates this node's arrays
+        boolean compressed = false;
+
+        Node(String inName, Object... inProperties) {
+            name = inName;
+            properties = inProperties;
+        }
+
+        Node with(Node... inChildren) {
+            children = inChildren;
+            return this;
+        }
+
+        Node compressed() {
+            compressed = true;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.obj;
+
+import com.jumi.JUMIImportOptions;
+import com.jumi.scene.JUMIScene;
+import com.jumi.scene.objects.JUMIMaterial;
+import com.jumi.scene.objects.JUMIMesh;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * OBJLoaderTest
+ * 
+ * Checks that importing an OBJ file in chunks gives exactly the same scene as reading it from start to finish,
+ * wherever the chunk boundaries happen to fall
+ * 
+ * @author Richard Greenlees
+ */
+public class OBJLoaderTest {
+
+    private static final int[] CHUNK_COUNTS = {2, 5, 31, 400};
+
+    @Test
+    public void chunkedImportMatchesSequential() throws IOException {
+        compareImports(new JUMIImportOptions());
+    }
+
+    @Test
+    public void chunkedImportMatchesSequentialWithoutUVs() throws IOException {
+        JUMIImportOptions options = new JUMIImportOptions();
+        options.skipUVs = true;
+        compareImports(options);
+    }
+
+    @Test
+    public void chunkedImportMatchesSequentialWithoutNormals() throws IOException {
+        JUMIImportOptions options = new JUMIImportOptions();
+        options.skipNormals = true;
+        compareImports(options);
+    }
+
+    @Test
+    public void missingFileGivesNullEitherWay() throws IOException {
+        File file = File.createTempFile("jumi", ".obj");
+        file.delete();
+
+        JUMIImportOptions options = new JUMIImportOptions();
+        assertNull(OBJLoader.importModel(file.getPath(), options));
+        options.parallelParsing = true;
+        assertNull(OBJLoader.importModel(file.getPath(), options));
+    }
+
+    private void compareImports(JUMIImportOptions options) throws IOException {
+        File folder = File.createTempFile("jumi", "");
+        folder.delete();
+        folder.mkdir();
+        File objFile = new File(folder, "test.obj");
+        File mtlFile = new File(folder, "test.mtl");
+
+        try {
+            write(mtlFile, "newmtl Red\nKd 1 0 0\n\nnewmtl Blue\nKd 0 0 1\nd 0.5\n");
+            write(objFile, createObj(new Random(3), 3000));
+            String fileName = objFile.getPath().replace('\\', '/');
+
+            JUMIScene expected = OBJLoader.importModel(fileName, options);
+            assertTrue(expected.numMeshes() > 1);
+
+            for (int chunkCount : CHUNK_COUNTS) {
+                JUMIScene actual = OBJLoader.importModelInChunks(fileName, options, chunkCount);
+                assertScenesEqual(chunkCount + " chunks", expected, actual);
+            }
+        } finally {
+            objFile.delete();
+            mtlFile.delete();
+            folder.delete();
+        }
+    }
+
+    private static void assertScenesEqual(String message, JUMIScene expected, JUMIScene actual) {
+        assertEquals(message, expected.numMeshes(), actual.numMeshes());
+
+        for (int i = 0; i < expected.numMeshes(); i++) {
+            JUMIMesh expectedMesh = expected.getMeshByIndex(i);
+            JUMIMesh actualMesh = actual.getMeshByIndex(i);
+            String meshMessage = message + ", mesh " + expectedMesh.name;
+
+            assertEquals(meshMessage, expectedMesh.name, actualMesh.name);
+            assertEquals(meshMessage, expectedMesh.faceType, actualMesh.faceType);
+            assertArrayEquals(meshMessage, expectedMesh.vertices, actualMesh.vertices, 0.0f);
+            assertArrayEquals(meshMessage, expectedMesh.normals, actualMesh.normals, 0.0f);
+            assertArrayEquals(meshMessage, expectedMesh.uvs, actualMesh.uvs, 0.0f);
+            assertArrayEquals(meshMessage, expectedMesh.indices, actualMesh.indices);
+
+            assertEquals(meshMessage, expectedMesh.materials.length, actualMesh.materials.length);
+            for (int j = 0; j < expectedMesh.materials.length; j++) {
+                JUMIMaterial expectedMaterial = expectedMesh.materials[j];
+                JUMIMaterial actualMaterial = actualMesh.materials[j];
+                assertEquals(meshMessage, expectedMaterial == null, actualMaterial == null);
+                if (expectedMaterial != null) {
+                    assertEquals(meshMessage, expectedMaterial.name, actualMaterial.name);
+                }
+            }
+        }
+    }
+
+    /* Random geometry in a random order. Faces refer back with both positive and negative indices, mix the corner
+     * formats, and are broken up by object, group and material changes, blank lines and comments. A few faces have
+     * too few or too many corners, so they're rejected */
+    private static String createObj(Random random, int lineCount) {
+        StringBuilder result = new StringBuilder("# generated\nmtllib test.mtl\n");
+        int vertexCount = 0;
+        int uvCount = 0;
+        int normalCount = 0;
+
+        for (int line = 0; line < lineCount; line++) {
+            int choice = (line < 12) ? line % 3 : random.nextInt(20);
+
+            if (choice == 0 || choice == 3 || choice == 4) {
+                result.append(String.format(Locale.ROOT, "v %.6f %.6f %.6f\n", random.nextGaussian(), random.nextGaussian(), random.nextGaussian()));
+                vertexCount++;
+            } else if (choice == 1 || choice == 5) {
+                result.append(String.format(Locale.ROOT, "vt %.5f %.5f\n", random.nextFloat(), random.nextFloat()));
+                uvCount++;
+            } else if (choice == 2 || choice == 6) {
+                result.append(String.format(Locale.ROOT, "vn %.4f %.4f %.4f\n", random.nextFloat(), random.nextFloat(), random.nextFloat()));
+                normalCount++;
+            } else if (choice < 14) {
+                int corners = 3 + random.nextInt(2);
+                if (random.nextInt(20) == 0) {
+                    corners = (random.nextBoolean()) ? 2 : 5;
+                }
+                boolean withUV = random.nextBoolean();
+                boolean withNormal = random.nextBoolean();
+
+                result.append('f');
+                for (int i = 0; i < corners; i++) {
+                    result.append(' ').append(randomIndex(random, vertexCount));
+                    if (withUV || withNormal) {
+                        result.append('/');
+                        if (withUV) {
+                            result.append(randomIndex(random, uvCount));
+                        }
+                    }
+                    if (withNormal) {
+                        result.append('/').append(randomIndex(random, normalCount));
+                    }
+                }
+                result.append('\n');
+            } else if (choice == 14) {
+                result.append("o Object").append(random.nextInt(4)).append('\n');
+            } else if (choice == 15) {
+                result.append("g Group").append(random.nextInt(4)).append('\n');
+            } else if (choice == 16) {
+                result.append("g\n");
+            } else if (choice == 17) {
+                result.append("usemtl ").append(random.nextBoolean() ? "Red" : "Blue").append('\n');
+            } else if (choice == 18) {
+                result.append("# comment ").append(line).append('\n');
+            } else {
+                result.append('\n');
+            }
+        }
+
+        return result.toString();
+    }
+
+    private static int randomIndex(Random random, int count) {
+        int index = 1 + random.nextInt(count);
+        return (random.nextBoolean()) ? index : index - count - 1;
+    }
+
+    private static void write(File file, String text) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            out.close();
+        }
+    }
+}
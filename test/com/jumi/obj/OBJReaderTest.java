@@ -0,0 +1,246 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.obj;
+
+import com.jumi.JUMIImportOptions;
+import com.jumi.data.FloatList;
+import com.jumi.data.IntList;
+import com.jumi.scene.JUMIScene;
+import com.jumi.scene.objects.JUMIMesh;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * OBJReaderTest
+ * 
+ * Checks what the reader passes to its visitor: negative indices resolved, and the face arrays reused. The faces it
+ * reports are checked against the meshes OBJLoader builds from the same file
+ * 
+ * @author Richard Greenlees
+ */
+public class OBJReaderTest {
+
+    @Test
+    public void resolvesNegativeIndices() throws IOException {
+        File file = write("v 0 0 0\nv 1 0 0\nv 0 1 0\nvt 0 0\nvt 1\nvn 0 0 1\nf -3/-2/-1 2/-1 -1//1\nv 1 1 0\nf -4 -3 -1 -2\n");
+        RecordingVisitor visitor = new RecordingVisitor();
+        read(file, visitor);
+
+        assertEquals(2, visitor.faceSizes.size());
+        int[] expected = {1, 1, 1, 2, 2, 0, 3, 0, 1, 1, 0, 0, 2, 0, 0, 4, 0, 0, 3, 0, 0};
+        assertArrayEquals(expected, visitor.corners.toArray());
+        assertArrayEquals(new float[] {0, 0, 1, 0}, visitor.uvs.toArray(), 0.0f);
+    }
+
+    @Test
+    public void reusesFaceArrays() throws IOException {
+        File file = write("v 0 0 0\nv 1 0 0\nv 0 1 0\nv 1 1 0\nf 1 2 3\nf 1 2 3 4\nf 4 3 2\n");
+        final ArrayList<int[]> arrays = new ArrayList<int[]>();
+        final ArrayList<int[]> copies = new ArrayList<int[]>();
+
+        read(file, new RecordingVisitor() {
+            @Override
+            public void face(int[] v, int[] vt, int[] vn) {
+                arrays.add(v);
+                copies.add(v.clone());
+            }
+        });
+
+        assertEquals(3, arrays.size());
+        assertSame(arrays.get(0), arrays.get(2));
+        assertNotSame(arrays.get(0), arrays.get(1));
+        // The first face's array now holds the third face, which is why visitors have to copy
+        assertArrayEquals(new int[] {4, 3, 2}, arrays.get(0));
+        assertArrayEquals(new int[] {1, 2, 3}, copies.get(0));
+    }
+
+    @Test
+    public void facesMatchLoader() throws IOException {
+        File file = write(createObj(new Random(7), 4000));
+
+        try {
+            RecordingVisitor visitor = new RecordingVisitor();
+            read(file, visitor);
+            float[] expected = triangleCorners(visitor);
+
+            JUMIImportOptions options = new JUMIImportOptions();
+            JUMIScene sequential = OBJLoader.importModel(file.getPath(), options);
+            assertArrayEquals(expected, triangleCorners(sequential.getMeshByIndex(0)), 0.0f);
+
+            JUMIScene chunked = OBJLoader.importModelInChunks(file.getPath(), options, 7);
+            assertArrayEquals(expected, triangleCorners(chunked.getMeshByIndex(0)), 0.0f);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /* The position, UV and normal of every corner of every triangle the visitor saw, with quads split the way the
+     * loader splits them */
+    private static float[] triangleCorners(RecordingVisitor visitor) {
+        FloatList result = new FloatList();
+        int[] quadOrder = {0, 1, 2, 2, 3, 0};
+        int[] triangleOrder = {0, 1, 2};
+        int face = 0;
+
+        for (int f = 0; f < visitor.faceSizes.size(); f++) {
+            int cornerCount = visitor.faceSizes.get(f);
+            for (int corner : (cornerCount == 4) ? quadOrder : triangleOrder) {
+                int index = (face + corner) * 3;
+                int v = visitor.corners.get(index) - 1;
+                int vt = visitor.corners.get(index + 1) - 1;
+                int vn = visitor.corners.get(index + 2) - 1;
+                result.add(visitor.vertices.get(v * 3), visitor.vertices.get(v * 3 + 1), visitor.vertices.get(v * 3 + 2));
+                result.add(visitor.uvs.get(vt * 2), visitor.uvs.get(vt * 2 + 1));
+                result.add(visitor.normals.get(vn * 3), visitor.normals.get(vn * 3 + 1), visitor.normals.get(vn * 3 + 2));
+            }
+            face += cornerCount;
+        }
+
+        return result.toArray();
+    }
+
+    private static float[] triangleCorners(JUMIMesh mesh) {
+        FloatList result = new FloatList();
+
+        for (int index : mesh.indices) {
+            result.add(mesh.vertices[index * 3], mesh.vertices[index * 3 + 1], mesh.vertices[index * 3 + 2]);
+            result.add(mesh.uvs[index * 2], mesh.uvs[index * 2 + 1]);
+            result.add(mesh.normals[index * 3], mesh.normals[index * 3 + 1], mesh.normals[index * 3 + 2]);
+        }
+
+        return result.toArray();
+    }
+
+    /* One object of triangles and quads, every corner with a UV and normal, indexed both ways round at random */
+    private static String createObj(Random random, int lineCount) {
+        StringBuilder result = new StringBuilder();
+        int vertexCount = 0;
+        int uvCount = 0;
+        int normalCount = 0;
+
+        for (int line = 0; line < lineCount; line++) {
+            int choice = (line < 3) ? line : random.nextInt(8);
+
+            if (choice == 0 || choice == 3) {
+                result.append(String.format(Locale.ROOT, "v %.6f %.6f %.6f\n", random.nextGaussian(), random.nextGaussian(), random.nextGaussian()));
+                vertexCount++;
+            } else if (choice == 1 || choice == 4) {
+                result.append(String.format(Locale.ROOT, "vt %.5f %.5f\n", random.nextFloat(), random.nextFloat()));
+                uvCount++;
+            } else if (choice == 2) {
+                result.append(String.format(Locale.ROOT, "vn %.4f %.4f %.4f\n", random.nextFloat(), random.nextFloat(), random.nextFloat()));
+                normalCount++;
+            } else {
+                result.append('f');
+                int cornerCount = 3 + random.nextInt(2);
+                for (int i = 0; i < cornerCount; i++) {
+                    result.append(' ').append(randomIndex(random, vertexCount));
+                    result.append('/').append(randomIndex(random, uvCount));
+                    result.append('/').append(randomIndex(random, normalCount));
+                }
+                result.append('\n');
+            }
+        }
+
+        return result.toString();
+    }
+
+    private static int randomIndex(Random random, int count) {
+        int index = 1 + random.nextInt(count);
+        return (random.nextBoolean()) ? index : index - count - 1;
+    }
+
+    private static void read(File file, OBJVisitor visitor) throws IOException {
+        OBJReader reader = OBJReader.open(file.getPath());
+        try {
+            reader.accept(visitor);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static File write(String text) throws IOException {
+        File file = File.createTempFile("jumi", ".obj");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /* Keeps a copy of everything it's given */
+    private static class RecordingVisitor implements OBJVisitor {
+
+        final FloatList vertices = new FloatList();
+        final FloatList uvs = new FloatList();
+        final FloatList normals = new FloatList();
+        final IntList faceSizes = new IntList();
+        // The vertex, UV and normal index of every corner, one after the other
+        final IntList corners = new IntList();
+
+        @Override
+        public void vertex(float x, float y, float z) {
+            vertices.add(x, y, z);
+        }
+
+        @Override
+        public void uv(float u, float v) {
+            uvs.add(u, v);
+        }
+
+        @Override
+        public void normal(float x, float y, float z) {
+            normals.add(x, y, z);
+        }
+
+        @Override
+        public void face(int[] v, int[] vt, int[] vn) {
+            faceSizes.add(v.length);
+            for (int i = 0; i < v.length; i++) {
+                corners.add(v[i], vt[i], vn[i]);
+            }
+        }
+
+        @Override
+        public void object(String name) {
+        }
+
+        @Override
+        public void group(String name) {
+        }
+
+        @Override
+        public void useMaterial(String name) {
+        }
+
+        @Override
+        public void materialLibrary(String fileName) {
+        }
+    }
+}
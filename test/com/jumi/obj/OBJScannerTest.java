@@ -0,0 +1,173 @@
+/*
+ * (C) Copyright 2015 Richard Greenlees
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ *  1) The above copyright notice and this permission notice shall be included
+ *     in all copies or substantial portions of the Software.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ */
+package com.jumi.obj;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * OBJScannerTest
+ * 
+ * Checks the scanner's number parsing against the JDK, and the parsing of face corners and keywords
+ * 
+ * @author Richard Greenlees
+ */
+public class OBJScannerTest {
+
+    @Test
+    public void readFloatMatchesParseFloat() throws IOException {
+        List<String> values = createFloatStrings(200000);
+        StringBuilder text = new StringBuilder();
+        for (String value : values) {
+            text.append("v ").append(value).append('\t').append(value).append("  \r\n");
+        }
+
+        File file = write(text.toString());
+        OBJScanner scanner = OBJScanner.open(file.getPath());
+
+        try {
+            for (String value : values) {
+                assertTrue(scanner.nextLine());
+                assertEquals(OBJScanner.VERTEX, scanner.readKeyword());
+
+                int expected = Float.floatToIntBits(Float.parseFloat(value));
+                assertEquals(value, expected, Float.floatToIntBits(scanner.readFloat()));
+                assertEquals(value, expected, Float.floatToIntBits(scanner.readFloat()));
+                assertFalse(scanner.hasValue());
+            }
+            assertFalse(scanner.nextLine());
+        } finally {
+            scanner.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void readFaceCorners() throws IOException {
+        File file = write("f 1/2/3 4//5 6/7 -8 9/-10/\n\n# comment\n  g  my group  \nusemtl red\nmtllib  a b.mtl  ");
+        OBJScanner scanner = OBJScanner.open(file.getPath());
+
+        try {
+            assertTrue(scanner.nextLine());
+            assertEquals(OBJScanner.FACE, scanner.readKeyword());
+
+            int[][] expected = {{1, 2, 3}, {4, 0, 5}, {6, 7, 0}, {-8, 0, 0}, {9, -10, 0}};
+            int[] corner = new int[3];
+            for (int[] expectedCorner : expected) {
+                assertTrue(scanner.readFaceCorner(corner, 0));
+                assertArrayEquals(expectedCorner, corner);
+            }
+            assertFalse(scanner.readFaceCorner(corner, 0));
+
+            assertTrue(scanner.nextLine());
+            assertEquals(OBJScanner.BLANK, scanner.readKeyword());
+            assertTrue(scanner.nextLine());
+            assertEquals(OBJScanner.BLANK, scanner.readKeyword());
+
+            assertTrue(scanner.nextLine());
+            assertEquals(OBJScanner.GROUP, scanner.readKeyword());
+            assertEquals("my group", scanner.readRemaining());
+
+            assertTrue(scanner.nextLine());
+            assertEquals(OBJScanner.USE_MATERIAL, scanner.readKeyword());
+            assertEquals("red", scanner.readWord());
+
+            assertTrue(scanner.nextLine());
+            assertEquals(OBJScanner.MATERIAL_LIBRARY, scanner.readKeyword());
+            assertEquals("a b.mtl", scanner.readRemaining());
+            assertEquals(6, scanner.getLineNumber());
+
+            assertFalse(scanner.nextLine());
+        } finally {
+            scanner.close();
+            file.delete();
+        }
+    }
+
+    /* A mix of the ways exporters write numbers, plus values sitting right on the halfway point between two floats,
+     * which the fast paths can't round on their own */
+    private static List<String> createFloatStrings(int count) {
+        Random random = new Random(5);
+        List<String> result = new ArrayList<String>();
+
+        while (result.size() < count) {
+            String value;
+            switch (result.size() % 7) {
+                case 0:
+                    value = Float.toString(Float.intBitsToFloat(random.nextInt()));
+                    break;
+                case 1:
+                    value = Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+                    break;
+                case 2:
+                    value = String.format(Locale.ROOT, "%.6f", (random.nextDouble() - 0.5) * 1000);
+                    break;
+                case 3:
+                    value = Long.toString(random.nextLong() >> random.nextInt(64));
+                    break;
+                case 4:
+                    value = random.nextInt(100000000) + "e" + (random.nextInt(50) - 25);
+                    break;
+                case 5: {
+                    float low = Float.intBitsToFloat(random.nextInt(0x7F000000));
+                    BigDecimal halfway = new BigDecimal(low).add(new BigDecimal(Math.nextUp(low))).divide(BigDecimal.valueOf(2));
+                    value = halfway.round(new MathContext(1 + random.nextInt(20))).toString();
+                    break;
+                }
+                default:
+                    value = String.format(Locale.ROOT, "%.7g", random.nextGaussian() * Math.pow(10, random.nextInt(10) - 5));
+                    break;
+            }
+
+            if (!value.contains("Infinity") && !value.contains("NaN")) {
+                result.add(value);
+            }
+        }
+
+        String[] edgeCases = {"-0", "0", ".5", "5.", "+1.5", "-.25", "1e-50", "1e50", "1E5", "3.4028235e38",
+            "1.4e-45", "00000000000000000000000000001.25", "0.000000000000000000000000000000000000000000001",
+            "123456789012345678901234567890", "0.1000000000000000055511151231257827021181583404541015625"};
+        for (String edgeCase : edgeCases) {
+            result.add(edgeCase);
+        }
+
+        return result;
+    }
+
+    private static File write(String text) throws IOException {
+        File file = File.createTempFile("jumi", ".obj");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}